@@ -0,0 +1,19 @@
+#!/bin/bash
+
+# Reads cards from simulated terminals with the packaged jar for a few seconds, and fails unless the scans came out
+# of the sink. Run after `mvn package`
+set -e
+
+JAR=target/rfid-reader2keyboard-1.0-SNAPSHOT-jar-with-dependencies.jar
+OUTPUT=target/simulation-test.txt
+
+java -Djava.awt.headless=true -jar $JAR --no-gui --simulate --simulate-rate=10 --no-journal \
+   --sink=stdout --exit-after=5 > $OUTPUT
+
+# The stdout sink writes a line per scan: the uid, the terminal and the time, separated by tabs
+SCANS=`grep -cP '^[0-9A-F]+\tSimulated ' $OUTPUT || true`
+echo "$SCANS scans arrived from the simulated terminals"
+if [ "$SCANS" -lt 5 ]; then
+   echo "Expected at least 5 scans, see $OUTPUT"
+   exit 1
+fi
@@ -0,0 +1,59 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The overhead of isolating a call in the bulkhead, and the cost of a call which times out (which retires its worker
+ * and starts a replacement)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BulkheadBenchmark {
+
+	private Bulkhead bulkhead;
+
+	@Setup
+	public void setUp() {
+		bulkhead = new Bulkhead("benchmark", 2, Integer.MAX_VALUE);
+	}
+
+	@TearDown
+	public void tearDown() {
+		bulkhead.shutdown();
+	}
+
+	@Benchmark
+	public ReadResult call() throws Exception {
+		return bulkhead.call(() -> ReadResult.NO_CARD, 150, TimeUnit.MILLISECONDS);
+	}
+
+	@Benchmark
+	public ReadResult callTimingOut() throws Exception {
+		try {
+			return bulkhead.call(() -> {
+				Thread.sleep(5);
+				return ReadResult.NO_CARD;
+			}, 1, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e) {
+			return ReadResult.TIMEOUT;
+		}
+	}
+}
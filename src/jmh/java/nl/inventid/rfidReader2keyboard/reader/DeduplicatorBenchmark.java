@@ -0,0 +1,52 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deciding whether a read card is new: the same card staying on the terminal (the common case), and a stream of
+ * different cards, which exceeds the capacity of the recent cards
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DeduplicatorBenchmark {
+
+	private static final int CARDS = 1024;
+
+	private final Uid[] cards = new Uid[CARDS];
+	private Deduplicator deduplicator;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < CARDS; i++) {
+			cards[i] = Uid.of(new byte[] { 0x04, (byte) (i >>> 8), (byte) i, 0x1C, (byte) 0xD2, 0x4F, (byte) 0x80 });
+		}
+		deduplicator = new Deduplicator(1250, 256);
+	}
+
+	@Benchmark
+	public boolean sameCard() {
+		return deduplicator.shouldOutput(cards[0]);
+	}
+
+	@Benchmark
+	public boolean differentCards() {
+		next = (next + 1) % CARDS;
+		return deduplicator.shouldOutput(cards[next]);
+	}
+}
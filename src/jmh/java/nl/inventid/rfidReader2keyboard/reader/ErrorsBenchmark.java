@@ -0,0 +1,43 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import javax.smartcardio.CardException;
+
+import java.util.concurrent.TimeUnit;
+
+import jnasmartcardio.Smartcardio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Classifying a failed read, both for exceptions carrying a PC/SC code and for those which only name it in their
+ * message
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ErrorsBenchmark {
+
+	private final CardException withCode =
+			new Smartcardio.JnaPCSCException(Errors.SCARD_W_REMOVED_CARD, "SCARD_W_REMOVED_CARD");
+	private final CardException withMessage = new CardException("connect() failed: SCARD_W_REMOVED_CARD");
+
+	@Benchmark
+	public ReadResult classifyCode() {
+		return ReadResult.failure(Errors.codeOf(withCode));
+	}
+
+	@Benchmark
+	public ReadResult classifyMessage() {
+		return ReadResult.failure(Errors.codeOf(withMessage));
+	}
+}
@@ -0,0 +1,59 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compiling a payload into key events, with a backend which only consumes the events instead of injecting them
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class KeyboardBenchmark {
+
+	private static final int CARDS = 1024;
+
+	private final Uid[] cards = new Uid[CARDS];
+	private Keyboard keyboard;
+	private int next;
+	// Written by the backend, so the key events are not optimized away
+	private volatile int lastEvent;
+
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < CARDS; i++) {
+			cards[i] = Uid.of(new byte[] { 0x04, (byte) (i >>> 8), (byte) i, 0x1C, (byte) 0xD2, 0x4F, (byte) 0x80 });
+		}
+		keyboard = new Keyboard((events, length) -> lastEvent = events[length - 1], KeystrokeTable.US);
+	}
+
+	@Benchmark
+	public void typeText() {
+		keyboard.type("045A2B1CD24F80\n");
+	}
+
+	@Benchmark
+	public void typeSameUid() {
+		keyboard.typeLine(cards[0]);
+	}
+
+	@Benchmark
+	public void typeDifferentUids() {
+		// More cards than the cache of compiled uids holds, so every uid is compiled
+		next = (next + 1) % CARDS;
+		keyboard.typeLine(cards[next]);
+	}
+}
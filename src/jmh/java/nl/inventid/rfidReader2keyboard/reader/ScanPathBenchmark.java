@@ -0,0 +1,76 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole scan: reading the uid from a (simulated, instantly responding) terminal, deduplicating it and compiling it
+ * into key events. The simulated terminal replaces the native PC/SC calls, so this measures our own overhead only
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ScanPathBenchmark {
+
+	private static final int CARDS = 1024;
+
+	private final Uid[] cards = new Uid[CARDS];
+	private SimulatedTerminal terminal;
+	private CardSession session;
+	private Deduplicator deduplicator;
+	private Keyboard keyboard;
+	private int next;
+	// Written by the backend, so the key events are not optimized away
+	private volatile int lastEvent;
+
+	@Setup
+	public void setUp() {
+		Simulation simulation = new Simulation();
+		simulation.setTapsPerSecond(0);
+		simulation.setApduLatencyInMs(0);
+		simulation.setApduJitterInMs(0);
+		terminal = simulation.getTerminals().get(0);
+		for (int i = 0; i < CARDS; i++) {
+			cards[i] = Uid.of(new byte[] { 0x04, (byte) (i >>> 8), (byte) i, 0x1C, (byte) 0xD2, 0x4F, (byte) 0x80 });
+		}
+		terminal.insert(cards[0]);
+		session = new CardSession(terminal, true, new ScanMetrics());
+		deduplicator = new Deduplicator(1250, 256);
+		keyboard = new Keyboard((events, length) -> lastEvent = events[length - 1], KeystrokeTable.US);
+	}
+
+	@Benchmark
+	public boolean sameCard() throws Exception {
+		return scan();
+	}
+
+	@Benchmark
+	public boolean newCard() throws Exception {
+		next = (next + 1) % CARDS;
+		session.close();
+		terminal.insert(cards[next]);
+		return scan();
+	}
+
+	private boolean scan() throws Exception {
+		ReadResult result = session.readUid();
+		if (result.getOutcome() != ReadOutcome.CARD || !deduplicator.shouldOutput(result.getUid())) {
+			return false;
+		}
+		keyboard.typeLine(result.getUid());
+		return true;
+	}
+}
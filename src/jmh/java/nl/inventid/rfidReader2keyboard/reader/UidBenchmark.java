@@ -0,0 +1,61 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding the uid from the response of a card, and formatting it as hexadecimal
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UidBenchmark {
+
+	// A 7 byte uid followed by 90 00
+	private final ByteBuffer response = ByteBuffer.wrap(new byte[] { 0x04, 0x5A, 0x2B, 0x1C, (byte) 0xD2, 0x4F, (byte) 0x80,
+			(byte) 0x90, 0x00 });
+	private final StringBuilder hex = new StringBuilder();
+
+	private Uid uid;
+
+	@Setup
+	public void setUp() {
+		uid = Uid.of(response, 7);
+	}
+
+	@Benchmark
+	public Uid decode() {
+		return Uid.of(response, 7);
+	}
+
+	@Benchmark
+	public boolean matchSameCard() {
+		return uid.matches(response, 7);
+	}
+
+	@Benchmark
+	public int appendHex() {
+		hex.setLength(0);
+		uid.appendHex(hex);
+		return hex.length();
+	}
+
+	@Benchmark
+	public String toHexString() {
+		return uid.toString();
+	}
+}
@@ -0,0 +1,392 @@
+package nl.inventid.rfidReader2keyboard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import nl.inventid.rfidReader2keyboard.reader.DeliveryStatus;
+import nl.inventid.rfidReader2keyboard.reader.EventRate;
+import nl.inventid.rfidReader2keyboard.reader.JournalEntry;
+import nl.inventid.rfidReader2keyboard.reader.LatencySnapshot;
+import nl.inventid.rfidReader2keyboard.reader.Reader;
+import nl.inventid.rfidReader2keyboard.reader.ReaderEvent;
+import nl.inventid.rfidReader2keyboard.reader.ScanEvent;
+import nl.inventid.rfidReader2keyboard.reader.ScanJournal;
+import nl.inventid.rfidReader2keyboard.reader.Uid;
+
+/**
+ * A small HTTP API on localhost to monitor and control the reader from scripts, when running without the GUI. All
+ * responses are JSON:
+ * <ul>
+ * <li>GET /status: the system status, including the health of each terminal</li>
+ * <li>GET /health: the health of each terminal</li>
+ * <li>GET /counters: the count and rate of each event, per terminal</li>
+ * <li>GET /latency: the latency percentiles of each stage of a scan, per terminal</li>
+ * <li>GET /journal?from=&amp;to=&amp;uid=&amp;limit=: the scans in the journal, within a time range (ISO-8601, the last
+ * hour by default) and/or of a single card, the latest 1000 by default</li>
+ * <li>GET /events: a stream (server-sent events) of every scan which is output</li>
+ * <li>POST /start and POST /stop: start or stop the reader</li>
+ * <li>POST /reconfigure: restart the reader with extra command line flags, given in the body</li>
+ * </ul>
+ * Requests from a browser (which carry an Origin) are refused, so web pages cannot control the reader.
+ */
+public class ControlServer {
+
+	private static final int SUBSCRIBER_BUFFER = 256;
+	private static final int KEEP_ALIVE_IN_SECONDS = 15;
+	private static final int DEFAULT_JOURNAL_LIMIT = 1000;
+	private static final Duration DEFAULT_JOURNAL_RANGE = Duration.ofHours(1);
+
+	private final HttpServer server;
+	private final SystemStatus systemStatus;
+	private final Set<BlockingQueue<String>> subscribers = ConcurrentHashMap.newKeySet();
+
+	private volatile Reader reader;
+	private Runnable onStartRequestedAction = () -> {};
+	private Runnable onStopRequestedAction = () -> {};
+	private Consumer<String[]> onReconfigureRequestedAction = flags -> {};
+
+	/**
+	 * @param port         the port to listen on, on localhost only
+	 * @param systemStatus the status to report
+	 * @throws IOException if the port could not be opened
+	 */
+	public ControlServer(int port, SystemStatus systemStatus) throws IOException {
+		this.systemStatus = systemStatus;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 16);
+		server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "control-server");
+			thread.setDaemon(true);
+			return thread;
+		}));
+		get("/status", this::status);
+		get("/health", () -> systemStatus.getTerminalHealth());
+		get("/counters", this::counters);
+		get("/latency", this::latencies);
+		server.createContext("/journal",
+				exchange -> handle(exchange, "GET", ignored -> respond(exchange, 200, journal(exchange))));
+		server.createContext("/events", exchange -> handle(exchange, "GET", this::streamEvents));
+		post("/start", exchange -> onStartRequestedAction.run());
+		post("/stop", exchange -> onStopRequestedAction.run());
+		post("/reconfigure", exchange -> {
+			String flags = new String(readBody(exchange), StandardCharsets.UTF_8).trim();
+			onReconfigureRequestedAction.accept(flags.isEmpty() ? new String[0] : flags.split("\\s+"));
+		});
+		server.start();
+		System.out.println("Control API listening on http://" + server.getAddress().getHostString() + ":"
+				+ server.getAddress().getPort());
+	}
+
+	public void onStartRequested(Runnable action) {
+		this.onStartRequestedAction = action;
+	}
+
+	public void onStopRequested(Runnable action) {
+		this.onStopRequestedAction = action;
+	}
+
+	/**
+	 * @param action what to do with the extra command line flags of a reconfiguration
+	 */
+	public void onReconfigureRequested(Consumer<String[]> action) {
+		this.onReconfigureRequestedAction = action;
+	}
+
+	/**
+	 * Report on the given reader from now on, e.g. after it was restarted
+	 *
+	 * @param reader the reader, or null if there is none
+	 */
+	public void setReader(Reader reader) {
+		this.reader = reader;
+		if (reader != null) {
+			reader.addScanListener(this::publish);
+		}
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	private Map<String, Object> status() {
+		StatusSnapshot snapshot = systemStatus.snapshot();
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("running", snapshot.isRunning());
+		status.put("readerStarted", snapshot.isReaderStarted());
+		status.put("readerRunning", snapshot.isReaderRunning());
+		status.put("terminalsDetected", snapshot.isTerminalsDetected());
+		status.put("foundReader", snapshot.isFoundReader());
+		status.put("schedulersStarted", snapshot.isSchedulersStarted());
+		status.put("terminals", snapshot.getTerminalHealth());
+		return status;
+	}
+
+	private Map<String, Object> counters() {
+		Map<String, Object> counters = new TreeMap<>();
+		Optional.ofNullable(reader).ifPresent(current -> {
+			Map<String, Map<ReaderEvent, EventRate>> rates = current.getRates();
+			current.getCounters().forEach((terminal, counts) -> {
+				Map<String, Object> events = new LinkedHashMap<>();
+				counts.forEach((event, count) -> {
+					EventRate rate = rates.get(terminal).get(event);
+					Map<String, Object> values = new LinkedHashMap<>();
+					values.put("count", count);
+					values.put("perMinute1", rate.getOneMinute());
+					values.put("perMinute5", rate.getFiveMinutes());
+					values.put("perMinute15", rate.getFifteenMinutes());
+					events.put(event.name(), values);
+				});
+				counters.put(terminal, events);
+			});
+		});
+		return counters;
+	}
+
+	private Map<String, Object> latencies() {
+		Map<String, Object> latencies = new TreeMap<>();
+		Optional.ofNullable(reader).ifPresent(current -> current.getLatencies().forEach((terminal, stages) -> {
+			Map<String, Object> values = new LinkedHashMap<>();
+			stages.forEach((stage, snapshot) -> values.put(stage.name(), latency(snapshot)));
+			latencies.put(terminal, values);
+		}));
+		return latencies;
+	}
+
+	private Map<String, Object> journal(HttpExchange exchange) throws IOException {
+		ScanJournal journal = Optional.ofNullable(reader)
+				.flatMap(Reader::getJournal)
+				.orElseThrow(() -> new RequestException(404, "No journal is kept"));
+		Map<String, String> query = query(exchange);
+		Optional<Uid> uid = Optional.ofNullable(query.get("uid")).map(ControlServer::toUid);
+		Instant to = Optional.ofNullable(query.get("to")).map(ControlServer::toInstant).orElse(Instant.now());
+		Instant from = Optional.ofNullable(query.get("from")).map(ControlServer::toInstant)
+				.orElse(uid.isPresent() ? Instant.EPOCH : to.minus(DEFAULT_JOURNAL_RANGE));
+		int limit = Optional.ofNullable(query.get("limit")).map(ControlServer::toLimit).orElse(DEFAULT_JOURNAL_LIMIT);
+
+		List<JournalEntry> found;
+		if (uid.isPresent()) {
+			found = journal.find(uid.get());
+			found.removeIf(entry -> entry.getTimestamp().isBefore(from) || entry.getTimestamp().isAfter(to));
+		}
+		else {
+			found = journal.find(from, to);
+		}
+		List<JournalEntry> latest = found.subList(Math.max(0, found.size() - limit), found.size());
+		List<Map<String, Object>> scans = new ArrayList<>(latest.size());
+		latest.forEach(entry -> {
+			Map<String, Object> scan = new LinkedHashMap<>();
+			scan.put("uid", entry.getUid());
+			scan.put("terminal", entry.getTerminalName());
+			scan.put("timestamp", entry.getTimestamp());
+			scan.put("status", entry.getStatus());
+			scans.add(scan);
+		});
+		Map<String, Object> response = new LinkedHashMap<>();
+		response.put("from", from);
+		response.put("to", to);
+		response.put("found", found.size());
+		response.put("scans", scans);
+		return response;
+	}
+
+	private static Uid toUid(String value) {
+		try {
+			return Uid.of(BaseEncoding.base16().decode(value.toUpperCase()));
+		}
+		catch (IllegalArgumentException e) {
+			throw new RequestException(400, "uid must be hexadecimal, not " + value);
+		}
+	}
+
+	private static Instant toInstant(String value) {
+		try {
+			return Instant.parse(value);
+		}
+		catch (DateTimeParseException e) {
+			throw new RequestException(400, "Times must be ISO-8601 instants like 2017-01-04T12:00:00Z, not " + value);
+		}
+	}
+
+	private static int toLimit(String value) {
+		try {
+			int limit = Integer.parseInt(value);
+			if (limit > 0) {
+				return limit;
+			}
+		}
+		catch (NumberFormatException e) {
+			// Reported below
+		}
+		throw new RequestException(400, "limit must be a positive number, not " + value);
+	}
+
+	private static Map<String, Object> latency(LatencySnapshot snapshot) {
+		Map<String, Object> values = new LinkedHashMap<>();
+		values.put("count", snapshot.getCount());
+		values.put("p50", snapshot.getP50());
+		values.put("p99", snapshot.getP99());
+		values.put("p999", snapshot.getP999());
+		values.put("max", snapshot.getMax());
+		return values;
+	}
+
+	private void publish(ScanEvent event, DeliveryStatus status) {
+		if (subscribers.isEmpty()) {
+			return;
+		}
+		Map<String, Object> scan = new LinkedHashMap<>();
+		scan.put("uid", event.getUid());
+		scan.put("terminal", event.getTerminalName());
+		scan.put("timestamp", event.getTimestamp());
+		scan.put("status", status);
+		String json = Json.of(scan);
+		// A subscriber which does not keep up misses scans, rather than slowing down the output
+		subscribers.forEach(subscriber -> subscriber.offer(json));
+	}
+
+	private void streamEvents(HttpExchange exchange) throws IOException {
+		BlockingQueue<String> subscriber = new ArrayBlockingQueue<>(SUBSCRIBER_BUFFER);
+		subscribers.add(subscriber);
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			while (true) {
+				String scan = subscriber.poll(KEEP_ALIVE_IN_SECONDS, TimeUnit.SECONDS);
+				// A comment keeps the connection alive, and notices when the client is gone
+				out.write((scan == null ? ":\n\n" : "data: " + scan + "\n\n").getBytes(StandardCharsets.UTF_8));
+				out.flush();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			subscribers.remove(subscriber);
+			exchange.close();
+		}
+	}
+
+	private void get(String path, Supplier<Object> response) {
+		server.createContext(path,
+				exchange -> handle(exchange, "GET", ignored -> respond(exchange, 200, response.get())));
+	}
+
+	private void post(String path, Action action) {
+		server.createContext(path, exchange -> handle(exchange, "POST", ignored -> {
+			action.run(exchange);
+			respond(exchange, 200, status());
+		}));
+	}
+
+	private void handle(HttpExchange exchange, String method, Action action) throws IOException {
+		try {
+			if (exchange.getRequestHeaders().containsKey("Origin")) {
+				respond(exchange, 403, error("Requests from browsers are not allowed"));
+			}
+			else if (!exchange.getRequestMethod().equals(method)) {
+				exchange.getResponseHeaders().set("Allow", method);
+				respond(exchange, 405, error("Use " + method));
+			}
+			else if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+				respond(exchange, 404, error("Not found"));
+			}
+			else {
+				action.run(exchange);
+			}
+		}
+		catch (InvalidFlagException e) {
+			respond(exchange, 400, error(e.getMessage()));
+		}
+		catch (RequestException e) {
+			respond(exchange, e.code, error(e.getMessage()));
+		}
+		catch (RuntimeException e) {
+			e.printStackTrace();
+			respond(exchange, 500, error(String.valueOf(e.getMessage())));
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int code, Object response) throws IOException {
+		byte[] body = (Json.of(response) + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(code, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static Map<String, Object> error(String message) {
+		Map<String, Object> error = new LinkedHashMap<>();
+		error.put("error", message);
+		return error;
+	}
+
+	private static Map<String, String> query(HttpExchange exchange) throws IOException {
+		Map<String, String> query = new HashMap<>();
+		String raw = exchange.getRequestURI().getRawQuery();
+		if (raw != null) {
+			for (String parameter : raw.split("&")) {
+				int equals = parameter.indexOf('=');
+				if (equals > 0) {
+					query.put(URLDecoder.decode(parameter.substring(0, equals), "UTF-8"),
+							URLDecoder.decode(parameter.substring(equals + 1), "UTF-8"));
+				}
+			}
+		}
+		return query;
+	}
+
+	private static byte[] readBody(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			return ByteStreams.toByteArray(ByteStreams.limit(in, 64 * 1024));
+		}
+	}
+
+	/**
+	 * A request which cannot be answered, with the status code to respond with
+	 */
+	private static class RequestException extends RuntimeException {
+
+		private final int code;
+
+		RequestException(int code, String message) {
+			super(message);
+			this.code = code;
+		}
+	}
+
+	/**
+	 * What to do with a request
+	 */
+	private interface Action {
+		void run(HttpExchange exchange) throws IOException;
+	}
+}
@@ -0,0 +1,151 @@
+package nl.inventid.rfidReader2keyboard;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import nl.inventid.rfidReader2keyboard.reader.EventRate;
+import nl.inventid.rfidReader2keyboard.reader.LatencySnapshot;
+import nl.inventid.rfidReader2keyboard.reader.Reader;
+import nl.inventid.rfidReader2keyboard.reader.ReaderEvent;
+import nl.inventid.rfidReader2keyboard.reader.ScanStage;
+import nl.inventid.rfidReader2keyboard.reader.TerminalHealth;
+
+/**
+ * A table with the throughput, latency, errors and health of each terminal, so a terminal which slows down stands
+ * out. Like the rates, the latencies only cover about the last minute. The table is refreshed from snapshots of the
+ * reader once a second (only while it is shown), however many scans happen in between.
+ */
+class Dashboard {
+
+	private static final int REFRESH_IN_MS = 1000;
+	private static final Set<ReaderEvent> ERRORS = EnumSet.of(ReaderEvent.READER_UNAVAILABLE,
+			ReaderEvent.TRANSACTION_FAILED, ReaderEvent.READ_FAILURE, ReaderEvent.EMPTY_CODE, ReaderEvent.UNKNOWN_ERROR,
+			ReaderEvent.STATUS_CHANGE_FAILURE, ReaderEvent.SATURATED);
+	private static final String[] COLUMNS = { "Terminal", "State", "Scans/min", "p50 last min (ms)",
+			"p99 last min (ms)", "Timeouts/min", "Errors/min", "Reconnects", "Errors by class (/min)" };
+
+	private final SystemStatus systemStatus;
+	private final Supplier<Reader> reader;
+	private final Model model = new Model();
+	private final JScrollPane component;
+	private final Timer timer;
+
+	/**
+	 * @param systemStatus the status holding the health of each terminal
+	 * @param reader       supplies the current reader, or null if there is none
+	 */
+	Dashboard(SystemStatus systemStatus, Supplier<Reader> reader) {
+		this.systemStatus = systemStatus;
+		this.reader = reader;
+		JTable table = new JTable(model);
+		table.setFillsViewportHeight(true);
+		table.getColumnModel().getColumn(0).setPreferredWidth(200);
+		table.getColumnModel().getColumn(COLUMNS.length - 1).setPreferredWidth(200);
+		this.component = new JScrollPane(table);
+		this.timer = new Timer(REFRESH_IN_MS, e -> refresh());
+	}
+
+	/**
+	 * @return the component showing the dashboard
+	 */
+	JComponent getComponent() {
+		return component;
+	}
+
+	/**
+	 * Start or stop refreshing, when the dashboard is shown or hidden
+	 */
+	void setRefreshing(boolean refreshing) {
+		if (refreshing) {
+			refresh();
+			timer.start();
+		}
+		else {
+			timer.stop();
+		}
+	}
+
+	private void refresh() {
+		Map<String, TerminalHealth> health = systemStatus.snapshot().getTerminalHealth();
+		List<Object[]> rows = new ArrayList<>();
+		Optional.ofNullable(reader.get()).ifPresent(current -> {
+			Map<String, Map<ReaderEvent, Long>> counters = current.getCounters();
+			Map<String, Map<ReaderEvent, EventRate>> rates = current.getRates();
+			Map<String, Map<ScanStage, LatencySnapshot>> latencies = current.getRecentLatencies();
+			counters.forEach((terminal, counts) -> {
+				Map<ReaderEvent, EventRate> terminalRates = rates.get(terminal);
+				LatencySnapshot tapToType = Optional.ofNullable(latencies.get(terminal))
+						.map(stages -> stages.get(ScanStage.TAP_TO_TYPE))
+						.orElse(null);
+				rows.add(new Object[] {
+						terminal,
+						health.containsKey(terminal) ? health.get(terminal) : "DETACHED",
+						perMinute(terminalRates, ReaderEvent.SCAN),
+						tapToType == null ? "" : millis(tapToType.getP50()),
+						tapToType == null ? "" : millis(tapToType.getP99()),
+						perMinute(terminalRates, ReaderEvent.TIMEOUT),
+						String.format("%.1f", ERRORS.stream()
+								.mapToDouble(error -> terminalRates.get(error).getOneMinute())
+								.sum()),
+						counts.get(ReaderEvent.RECONNECT),
+						ERRORS.stream()
+								.filter(error -> terminalRates.get(error).getOneMinute() >= 0.05)
+								.map(error -> error + " " + perMinute(terminalRates, error))
+								.collect(Collectors.joining(", ")),
+				});
+			});
+		});
+		model.setRows(rows);
+	}
+
+	private static String perMinute(Map<ReaderEvent, EventRate> rates, ReaderEvent event) {
+		return String.format("%.1f", rates.get(event).getOneMinute());
+	}
+
+	private static String millis(long micros) {
+		return String.format("%.1f", micros / 1000.0);
+	}
+
+	/**
+	 * The rows of the table, replaced as a whole on every refresh
+	 */
+	private static class Model extends AbstractTableModel {
+
+		private List<Object[]> rows = Collections.emptyList();
+
+		void setRows(List<Object[]> rows) {
+			this.rows = rows;
+			fireTableDataChanged();
+		}
+
+		@Override
+		public int getRowCount() {
+			return rows.size();
+		}
+
+		@Override
+		public int getColumnCount() {
+			return COLUMNS.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return COLUMNS[column];
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			return rows.get(row)[column];
+		}
+	}
+}
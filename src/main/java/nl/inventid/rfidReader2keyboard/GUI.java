@@ -3,9 +3,16 @@ package nl.inventid.rfidReader2keyboard;
 import javax.swing.*;
 
 import java.awt.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import nl.inventid.rfidReader2keyboard.reader.Reader;
 
 /**
- * This class starts and handles the GUI
+ * This class starts and handles the GUI. It must be created on the event dispatch thread. Starting and stopping the
+ * reader takes a while, so the start and stop actions run on a thread of their own, and their outcome shows up through
+ * the status bus.
  */
 public class GUI {
 
@@ -24,11 +31,22 @@ public class GUI {
 	private static final int OFFSET_Y = 10;
 	private static final int WIDTH = 300;
 	private static final int HEIGHT = 80;
+	private static final int DASHBOARD_WIDTH = 900;
+	private static final int DASHBOARD_HEIGHT = 240;
 
 	private final SystemStatus systemStatus;
 	private final JFrame frame;
 	private final JLabel textLabel;
 	private final JButton button;
+	private final JPanel compactPanel;
+	private final JToggleButton detailsButton;
+	private final ExecutorService actions = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "gui-actions");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private Dashboard dashboard;
 
 	private ButtonStatus buttonActionType;
 	private Runnable onStartPressedAction;
@@ -38,28 +56,31 @@ public class GUI {
 		this.systemStatus = systemStatus;
 
 		frame = new JFrame();
-		frame.setBounds(frameRectangle());
+		frame.setBounds(frameRectangle(WIDTH, HEIGHT));
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		frame.getContentPane().setLayout(new GridLayout(2, 1));
+		frame.getContentPane().setLayout(new BorderLayout());
+		compactPanel = new JPanel(new GridLayout(2, 1));
+		frame.getContentPane().add(compactPanel, BorderLayout.CENTER);
 
 		textLabel = new JLabel(statusString());
 		textLabel.setForeground(Color.BLACK);
 		textLabel.setOpaque(true);
 		textLabel.setHorizontalAlignment(JLabel.CENTER);
-		frame.getContentPane().add(textLabel);
+		compactPanel.add(textLabel);
 
 		button = new JButton();
 		button.setForeground(Color.BLACK);
 		button.setOpaque(true);
 		button.setHorizontalAlignment(JLabel.CENTER);
 		button.addActionListener(e -> {
+			Runnable action;
 			if (buttonActionType == ButtonStatus.START) {
-				onStartPressedAction.run();
+				action = onStartPressedAction;
 				setButtonText(ButtonStatus.STOP.buttonValue);
 				buttonActionType = ButtonStatus.STOP;
 			}
 			else if (buttonActionType == ButtonStatus.STOP) {
-				onStopPressedAction.run();
+				action = onStopPressedAction;
 				setButtonText(ButtonStatus.START.buttonValue);
 				buttonActionType = ButtonStatus.START;
 			}
@@ -68,10 +89,24 @@ public class GUI {
 				System.err.println(systemStatus);
 				return;
 			}
-			setLabelText(statusString());
-			frame.repaint();
+			// Until the action is done, so it cannot be undone halfway
+			button.setEnabled(false);
+			actions.execute(() -> {
+				try {
+					action.run();
+				}
+				finally {
+					SwingUtilities.invokeLater(() -> button.setEnabled(true));
+				}
+			});
 		});
-		frame.getContentPane().add(button);
+		detailsButton = new JToggleButton("Details");
+		detailsButton.setVisible(false);
+		detailsButton.addActionListener(e -> setDashboardShown(detailsButton.isSelected()));
+		JPanel buttons = new JPanel(new BorderLayout());
+		buttons.add(button, BorderLayout.CENTER);
+		buttons.add(detailsButton, BorderLayout.EAST);
+		compactPanel.add(buttons);
 		frame.setVisible(true);
 		setLabelText(statusString());
 		if(shouldAutostart) {
@@ -82,15 +117,48 @@ public class GUI {
 			buttonActionType = ButtonStatus.START;
 		}
 		frame.repaint();
-		systemStatus.onChange(() -> setLabelText(statusString()));
+		systemStatus.subscribeOnEdt(snapshot -> setLabelText(statusString(snapshot)));
 	}
 
-	private Rectangle frameRectangle() {
+	private Rectangle frameRectangle(int width, int height) {
 		Dimension resolution = Toolkit.getDefaultToolkit().getScreenSize();
-		int frameLocationX = (int) resolution.getWidth() - WIDTH - OFFSET_X;
-		int frameLocationY = (int) resolution.getHeight() - HEIGHT - OFFSET_Y;
+		int frameLocationX = (int) resolution.getWidth() - width - OFFSET_X;
+		int frameLocationY = (int) resolution.getHeight() - height - OFFSET_Y;
+
+		return new Rectangle(frameLocationX, frameLocationY, width, height);
+	}
+
+	/**
+	 * Offer a dashboard with the throughput, latency and health of each terminal, shown with the details button
+	 *
+	 * @param reader supplies the current reader, or null if there is none
+	 * @param shown  whether to show the dashboard right away
+	 */
+	public void enableDashboard(Supplier<Reader> reader, boolean shown) {
+		SwingUtilities.invokeLater(() -> {
+			dashboard = new Dashboard(systemStatus, reader);
+			detailsButton.setVisible(true);
+			detailsButton.setSelected(shown);
+			setDashboardShown(shown);
+		});
+	}
 
-		return new Rectangle(frameLocationX, frameLocationY, WIDTH, HEIGHT);
+	private void setDashboardShown(boolean shown) {
+		Container content = frame.getContentPane();
+		content.removeAll();
+		if (shown) {
+			compactPanel.setPreferredSize(new Dimension(WIDTH, HEIGHT / 2));
+			content.add(compactPanel, BorderLayout.NORTH);
+			content.add(dashboard.getComponent(), BorderLayout.CENTER);
+			frame.setBounds(frameRectangle(DASHBOARD_WIDTH, DASHBOARD_HEIGHT));
+		}
+		else {
+			content.add(compactPanel, BorderLayout.CENTER);
+			frame.setBounds(frameRectangle(WIDTH, HEIGHT));
+		}
+		dashboard.setRefreshing(shown);
+		frame.revalidate();
+		frame.repaint();
 	}
 
 	public void onStartPressed(Runnable action) {
@@ -113,6 +181,10 @@ public class GUI {
 	}
 
 	private String statusString() {
+		return statusString(systemStatus.snapshot());
+	}
+
+	private String statusString(StatusSnapshot systemStatus) {
 		if (!systemStatus.isRunning()) {
 			return "RFID scanning system is not active";
 		}
@@ -0,0 +1,11 @@
+package nl.inventid.rfidReader2keyboard;
+
+/**
+ * A flag was given a value it cannot use. The message names the flag and the value it expects
+ */
+class InvalidFlagException extends IllegalArgumentException {
+
+	InvalidFlagException(String message) {
+		super(message);
+	}
+}
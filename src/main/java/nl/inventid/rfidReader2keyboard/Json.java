@@ -0,0 +1,75 @@
+package nl.inventid.rfidReader2keyboard;
+
+import java.util.Map;
+
+/**
+ * Writes the few kinds of values the control API returns as JSON: maps (as objects), iterables (as arrays), numbers,
+ * booleans, null and anything else as a string
+ */
+final class Json {
+
+	private Json() {
+	}
+
+	/**
+	 * @param value the value to write
+	 * @return the value as JSON
+	 */
+	static String of(Object value) {
+		StringBuilder json = new StringBuilder();
+		append(json, value);
+		return json.toString();
+	}
+
+	private static void append(StringBuilder json, Object value) {
+		if (value == null || value instanceof Boolean) {
+			json.append(value);
+		}
+		else if (value instanceof Number) {
+			double number = ((Number) value).doubleValue();
+			json.append(Double.isNaN(number) || Double.isInfinite(number) ? "null" : value);
+		}
+		else if (value instanceof Map) {
+			json.append('{');
+			String separator = "";
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				json.append(separator);
+				appendString(json, String.valueOf(entry.getKey()));
+				json.append(':');
+				append(json, entry.getValue());
+				separator = ",";
+			}
+			json.append('}');
+		}
+		else if (value instanceof Iterable) {
+			json.append('[');
+			String separator = "";
+			for (Object element : (Iterable<?>) value) {
+				json.append(separator);
+				append(json, element);
+				separator = ",";
+			}
+			json.append(']');
+		}
+		else {
+			appendString(json, value.toString());
+		}
+	}
+
+	private static void appendString(StringBuilder json, String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char character = value.charAt(i);
+			if (character == '"' || character == '\\') {
+				json.append('\\').append(character);
+			}
+			else if (character < 0x20) {
+				json.append(String.format("\\u%04x", (int) character));
+			}
+			else {
+				json.append(character);
+			}
+		}
+		json.append('"');
+	}
+}
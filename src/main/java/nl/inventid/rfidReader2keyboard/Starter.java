@@ -1,5 +1,10 @@
 package nl.inventid.rfidReader2keyboard;
 
+import javax.swing.SwingUtilities;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
@@ -8,9 +13,18 @@ import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import nl.inventid.rfidReader2keyboard.reader.BackpressurePolicy;
+import nl.inventid.rfidReader2keyboard.reader.DetectionMode;
 import nl.inventid.rfidReader2keyboard.reader.Reader;
+import nl.inventid.rfidReader2keyboard.reader.ReaderConfiguration;
+import nl.inventid.rfidReader2keyboard.reader.Simulation;
+import nl.inventid.rfidReader2keyboard.reader.SinkType;
+import nl.inventid.rfidReader2keyboard.reader.TraceReplayer;
+import nl.inventid.rfidReader2keyboard.reader.UidListMode;
+import nl.inventid.rfidReader2keyboard.reader.UidSet;
 
 /**
  * This class is the service starter
@@ -22,6 +36,37 @@ public class Starter {
 		NO_AUTOSTART("--no-autostart"),
 		NO_BUZZ("--no-buzzer"),
 		DEBUG("--debug"),
+		POLL("--poll"),
+		ALL_TERMINALS("--all-terminals"),
+		UINPUT("--uinput"),
+		DAEMON("--daemon"),
+		DASHBOARD("--dashboard"),
+		// Flags with a value, used as --flag=value
+		BACKPRESSURE("--backpressure"),
+		OUTPUT_QUEUE("--output-queue"),
+		DEDUP_WINDOW("--dedup-window"),
+		POLL_FLOOR("--poll-floor"),
+		POLL_CEILING("--poll-ceiling"),
+		SIMULATE("--simulate"),
+		SIMULATE_TERMINALS("--simulate-terminals"),
+		SIMULATE_RATE("--simulate-rate"),
+		SIMULATE_LATENCY("--simulate-latency"),
+		SIMULATE_FAILURES("--simulate-failures"),
+		SIMULATE_HANGS("--simulate-hangs"),
+		RECORD("--record"),
+		REPLAY("--replay"),
+		REPLAY_SPEED("--replay-speed"),
+		JOURNAL("--journal"),
+		NO_JOURNAL("--no-journal"),
+		ALLOWLIST("--allowlist"),
+		BLOCKLIST("--blocklist"),
+		COMPILE_UID_LIST("--compile-uid-list"),
+		SINK("--sink"),
+		TERMINAL_SINK("--terminal-sink"),
+		SINK_PORT("--sink-port"),
+		SINK_PIPE("--sink-pipe"),
+		CONTROL_PORT("--control-port"),
+		EXIT_AFTER("--exit-after"),
 		;
 
 		private final String flagParameter;
@@ -31,13 +76,108 @@ public class Starter {
 		}
 
 		static Optional<Flags> stringToFlag(String s) {
-			return Arrays.stream(Flags.values()).filter(flags -> flags.flagParameter.equals(s)).findFirst();
+			return Arrays.stream(Flags.values())
+					.filter(flags -> flags.flagParameter.equals(s) || s.startsWith(flags.flagParameter + "="))
+					.findFirst();
+		}
+
+		/**
+		 * @param args the command line arguments
+		 * @return the value given to this flag (as --flag=value), if any
+		 */
+		Optional<String> valueIn(String[] args) {
+			return Arrays.stream(args)
+					.filter(s -> s.startsWith(flagParameter + "="))
+					.map(s -> s.substring(flagParameter.length() + 1))
+					.reduce((first, second) -> second);
+		}
+
+		/**
+		 * @param args the command line arguments
+		 * @return the whole number given to this flag, if any
+		 * @throws InvalidFlagException if the value is not a whole number
+		 */
+		Optional<Integer> intIn(String[] args) {
+			return valueIn(args).map(value -> parse(value, Integer::valueOf, "a whole number"));
+		}
+
+		/**
+		 * @param args the command line arguments
+		 * @return the whole number given to this flag, if any
+		 * @throws InvalidFlagException if the value is not a whole number
+		 */
+		Optional<Long> longIn(String[] args) {
+			return valueIn(args).map(value -> parse(value, Long::valueOf, "a whole number"));
+		}
+
+		/**
+		 * @param args the command line arguments
+		 * @return the number given to this flag, if any
+		 * @throws InvalidFlagException if the value is not a number
+		 */
+		Optional<Double> doubleIn(String[] args) {
+			return valueIn(args).map(value -> parse(value, Double::valueOf, "a number"));
+		}
+
+		/**
+		 * @param args   the command line arguments
+		 * @param values the values the flag may have, written in lower case with dashes on the command line
+		 * @return the value given to this flag, if any
+		 * @throws InvalidFlagException if the value is not one of the values
+		 */
+		<E extends Enum<E>> Optional<E> enumIn(String[] args, Class<E> values) {
+			return valueIn(args).map(value -> toEnum(value, values));
+		}
+
+		/**
+		 * @param args the command line arguments
+		 * @return the path given to this flag, if any
+		 * @throws InvalidFlagException if the value is not a path
+		 */
+		Optional<Path> pathIn(String[] args) {
+			return valueIn(args).map(value -> parse(value, Paths::get, "a path"));
+		}
+
+		<E extends Enum<E>> E toEnum(String value, Class<E> values) {
+			return parse(value, name -> Enum.valueOf(values, name.toUpperCase().replace('-', '_')),
+					"one of " + Arrays.stream(values.getEnumConstants())
+							.map(constant -> constant.name().toLowerCase().replace('_', '-'))
+							.collect(Collectors.joining(", ")));
+		}
+
+		<T> T parse(String value, Function<String, T> parser, String expected) {
+			try {
+				return parser.apply(value.trim());
+			}
+			catch (IllegalArgumentException e) {
+				throw invalid(value, expected);
+			}
+		}
+
+		InvalidFlagException invalid(String value, String expected) {
+			return new InvalidFlagException("Invalid value '" + value + "' for " + flagParameter + ", expected "
+					+ expected);
+		}
+
+		/**
+		 * @param args the command line arguments
+		 * @return all values given to this flag (as --flag=value), in order
+		 */
+		List<String> valuesIn(String[] args) {
+			return Arrays.stream(args)
+					.filter(s -> s.startsWith(flagParameter + "="))
+					.map(s -> s.substring(flagParameter.length() + 1))
+					.collect(Collectors.toList());
 		}
 	}
 
-	private static Reader currentReader;
+	private static volatile Reader currentReader;
+	// Whether the current reader was started, since without autostart it is only created
+	private static volatile boolean readerStarted;
 	private static SystemStatus systemStatus;
-	private static boolean shouldBuzz;
+	private static ReaderConfiguration configuration;
+	private static String[] arguments;
+	private static Optional<ControlServer> controlServer = Optional.empty();
 
 
 	public static void main(String[] args) {
@@ -45,9 +185,33 @@ public class Starter {
 				.filter(Optional::isPresent)
 				.map(Optional::get)
 				.collect(Collectors.toList());
-		boolean withGui = !parameters.contains(Flags.NO_GUI);
+		Optional<String> uidListToCompile = Flags.COMPILE_UID_LIST.valueIn(args);
+		if (uidListToCompile.isPresent()) {
+			compileUidList(uidListToCompile.get());
+			return;
+		}
+		boolean daemon = parameters.contains(Flags.DAEMON);
+		boolean withGui = !parameters.contains(Flags.NO_GUI) && !daemon;
+		arguments = args;
 		boolean shouldAutostart = !parameters.contains(Flags.NO_AUTOSTART);
-		shouldBuzz = !parameters.contains(Flags.NO_BUZZ);
+		int controlPort;
+		Optional<Long> exitAfter;
+		try {
+			configuration = readConfiguration(parameters, args);
+			controlPort = Flags.CONTROL_PORT.intIn(args).orElse(7780);
+			exitAfter = Flags.EXIT_AFTER.longIn(args);
+		}
+		catch (InvalidFlagException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+			return;
+		}
+
+		if (configuration.getSink() == SinkType.STDOUT
+				|| configuration.getTerminalSinks().containsValue(SinkType.STDOUT)) {
+			// The standard output only holds scans, so log to the standard error
+			System.setOut(System.err);
+		}
 
 		System.out.println("Will start with the following parameters: " + parameters);
 
@@ -58,13 +222,24 @@ public class Starter {
 			executorService.scheduleAtFixedRate(() -> System.out.println(systemStatus), 1, 5, TimeUnit.SECONDS);
 		}
 
+		if (daemon) {
+			startControlServer(controlPort);
+		}
+		exitAfter.ifPresent(Starter::exitAfter);
+
 		if (withGui) {
-			// start the gui
-			GUI gui = new GUI(systemStatus, shouldAutostart);
-			startReader(shouldAutostart);
-			// When restarting, always start it
-			gui.onStartPressed(() -> startReader(true));
-			gui.onStopPressed(() -> stopReader());
+			// Connect to the terminals while the gui is built, both take a while
+			Thread readerStartup = new Thread(() -> startReader(shouldAutostart), "reader-startup");
+			readerStartup.start();
+			// start the gui, on the event dispatch thread like anything else touching Swing
+			boolean dashboard = parameters.contains(Flags.DASHBOARD);
+			SwingUtilities.invokeLater(() -> {
+				GUI gui = new GUI(systemStatus, shouldAutostart);
+				// When restarting, always start it
+				gui.onStartPressed(() -> startReader(true));
+				gui.onStopPressed(() -> stopReader());
+				gui.enableDashboard(() -> currentReader, dashboard);
+			});
 		}
 		else {
 			startReader(shouldAutostart);
@@ -72,23 +247,183 @@ public class Starter {
 
 	}
 
-	public static void startReader(boolean start) {
+	/**
+	 * Exit after a while, e.g. to end the run which records the classes for the class data sharing archive
+	 *
+	 * @param seconds the time to run
+	 */
+	private static void exitAfter(long seconds) {
+		System.out.println("Will exit after " + seconds + " seconds");
+		Thread exit = new Thread(() -> {
+			try {
+				TimeUnit.SECONDS.sleep(seconds);
+			}
+			catch (InterruptedException e) {
+				// Exit anyway
+			}
+			System.exit(0);
+		}, "exit-after");
+		exit.setDaemon(true);
+		exit.start();
+	}
+
+	private static ReaderConfiguration readConfiguration(List<Flags> parameters, String[] args) {
+		ReaderConfiguration configuration = new ReaderConfiguration();
+		configuration.setShouldBuzz(!parameters.contains(Flags.NO_BUZZ));
+		if (parameters.contains(Flags.POLL)) {
+			configuration.setDetectionMode(DetectionMode.POLL);
+		}
+		configuration.setMultiTerminal(parameters.contains(Flags.ALL_TERMINALS));
+		configuration.setUinput(parameters.contains(Flags.UINPUT));
+		Flags.BACKPRESSURE.enumIn(args, BackpressurePolicy.class).ifPresent(configuration::setBackpressurePolicy);
+		Flags.OUTPUT_QUEUE.intIn(args).ifPresent(configuration::setOutputQueueCapacity);
+		Flags.DEDUP_WINDOW.longIn(args).ifPresent(configuration::setDedupWindowInMs);
+		Flags.POLL_FLOOR.longIn(args).ifPresent(configuration::setPollFloorInMs);
+		Flags.POLL_CEILING.longIn(args).ifPresent(configuration::setPollCeilingInMs);
+		if (parameters.contains(Flags.SIMULATE)) {
+			configuration.setSimulation(readSimulation(args));
+		}
+		Flags.JOURNAL.pathIn(args).ifPresent(configuration::setJournalDirectory);
+		if (parameters.contains(Flags.NO_JOURNAL)) {
+			configuration.setJournalDirectory(null);
+		}
+		Flags.ALLOWLIST.pathIn(args).ifPresent(list -> {
+			configuration.setUidListPath(list);
+			configuration.setUidListMode(UidListMode.ALLOW);
+		});
+		Flags.BLOCKLIST.pathIn(args).ifPresent(list -> {
+			configuration.setUidListPath(list);
+			configuration.setUidListMode(UidListMode.BLOCK);
+		});
+		Flags.SINK.enumIn(args, SinkType.class).ifPresent(configuration::setSink);
+		// As --terminal-sink=<part of the terminal name>=<sink>
+		Flags.TERMINAL_SINK.valuesIn(args).forEach(terminalSink -> {
+			int separator = terminalSink.lastIndexOf('=');
+			if (separator < 0) {
+				throw Flags.TERMINAL_SINK.invalid(terminalSink, "<part of the terminal name>=<sink>");
+			}
+			configuration.getTerminalSinks().put(terminalSink.substring(0, separator),
+					Flags.TERMINAL_SINK.toEnum(terminalSink.substring(separator + 1), SinkType.class));
+		});
+		Flags.SINK_PORT.intIn(args).ifPresent(configuration::setSinkPort);
+		Flags.SINK_PIPE.pathIn(args).ifPresent(configuration::setSinkPipePath);
+		Flags.RECORD.pathIn(args).ifPresent(configuration::setTracePath);
+		Flags.REPLAY.pathIn(args).ifPresent(trace -> {
+			double speed = Flags.REPLAY_SPEED.doubleIn(args).orElse(1.0);
+			try {
+				configuration.setReplay(new TraceReplayer(trace, speed));
+			}
+			catch (IOException e) {
+				System.err.println("Unable to replay " + trace);
+				e.printStackTrace();
+			}
+		});
+		return configuration;
+	}
+
+	/**
+	 * Compile a text file with a uid on each line to a compact file next to it, which loads instantly
+	 */
+	private static void compileUidList(String textFile) {
+		try {
+			UidSet uids = UidSet.compile(Paths.get(textFile));
+			uids.save(Paths.get(textFile + ".uidset"));
+			System.out.println("Compiled " + uids.size() + " uids to " + textFile + ".uidset");
+		}
+		catch (IOException e) {
+			System.err.println("Unable to compile " + textFile);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private static Simulation readSimulation(String[] args) {
+		Simulation simulation = new Simulation();
+		Flags.SIMULATE_TERMINALS.intIn(args).ifPresent(simulation::setTerminalCount);
+		Flags.SIMULATE_RATE.doubleIn(args).ifPresent(simulation::setTapsPerSecond);
+		Flags.SIMULATE_LATENCY.longIn(args).ifPresent(simulation::setApduLatencyInMs);
+		Flags.SIMULATE_FAILURES.doubleIn(args).ifPresent(simulation::setFailureRate);
+		Flags.SIMULATE_HANGS.doubleIn(args).ifPresent(simulation::setHangRate);
+		return simulation;
+	}
+
+	private static void startControlServer(int port) {
+		try {
+			ControlServer server = new ControlServer(port, systemStatus);
+			server.onStartRequested(() -> {
+				if (!readerStarted) {
+					startReader(true);
+				}
+			});
+			server.onStopRequested(() -> stopReader());
+			server.onReconfigureRequested(flags -> reconfigure(flags));
+			controlServer = Optional.of(server);
+		}
+		catch (IOException e) {
+			System.err.println("Unable to start the control API on port " + port);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Restart the reader with the flags it was started with, followed by the given flags
+	 *
+	 * @param flags the extra flags, which take precedence
+	 */
+	private static synchronized void reconfigure(String[] flags) {
+		String[] args = Arrays.copyOf(arguments, arguments.length + flags.length);
+		System.arraycopy(flags, 0, args, arguments.length, flags.length);
+		List<Flags> parameters = Arrays.stream(args).map(s -> Flags.stringToFlag(s))
+				.filter(Optional::isPresent)
+				.map(Optional::get)
+				.collect(Collectors.toList());
+		ReaderConfiguration reconfigured = readConfiguration(parameters, args);
+		System.out.println("Reconfiguring with the following parameters: " + parameters);
+		boolean running = readerStarted;
+		stopReader();
+		arguments = args;
+		configuration = reconfigured;
+		if (running) {
+			startReader(true);
+		}
+	}
+
+	/**
+	 * Start reading. A reader which was created but not started yet is simply started, a reader which is running is
+	 * replaced by a new one
+	 *
+	 * @param start false to only create the reader, e.g. to start it later from the gui or the control API
+	 */
+	public static synchronized void startReader(boolean start) {
+		if (currentReader != null && !readerStarted) {
+			if (start) {
+				currentReader.start();
+				readerStarted = true;
+			}
+			return;
+		}
+		// Never leave a reader running, it holds on to the terminals, its sinks and its journal
+		stopReader();
 		initializeReader(Starter.systemStatus).ifPresent(reader -> {
 			Starter.currentReader = reader;
+			controlServer.ifPresent(server -> server.setReader(reader));
 			if (start) {
 				reader.start();
+				readerStarted = true;
 			}
 		});
 	}
 
-	public static void stopReader() {
+	public static synchronized void stopReader() {
 		Optional.ofNullable(Starter.currentReader).ifPresent(reader -> reader.stop());
 		currentReader = null;
+		readerStarted = false;
+		controlServer.ifPresent(server -> server.setReader(null));
 	}
 
 	private static Optional<Reader> initializeReader(SystemStatus systemStatus) {
 		try {
-			return Optional.ofNullable(new Reader(systemStatus, shouldBuzz));
+			return Optional.ofNullable(new Reader(systemStatus, configuration));
 		}
 		catch (NoSuchAlgorithmException e) {
 			e.printStackTrace();
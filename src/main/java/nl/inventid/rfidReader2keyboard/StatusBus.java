@@ -0,0 +1,85 @@
+package nl.inventid.rfidReader2keyboard;
+
+import javax.swing.SwingUtilities;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Tells subscribers about changes of the status. Changes are coalesced: the first change schedules a delivery a short
+ * window later, and every change until then is part of that delivery, so a burst of changes (e.g. when starting the
+ * reader) results in a single snapshot of the latest status. Snapshots are delivered by a thread of the bus, so a
+ * thread changing the status never waits for a subscriber. Swing subscribers get their snapshots on the event
+ * dispatch thread, and when that thread is behind, only the latest snapshot.
+ */
+class StatusBus {
+
+	private static final long COALESCE_WINDOW_IN_MS = 50;
+
+	private final Supplier<StatusSnapshot> source;
+	private final List<Consumer<StatusSnapshot>> subscribers = new CopyOnWriteArrayList<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final ScheduledExecutorService executorService = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "status-bus");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * @param source takes a snapshot of the current status
+	 */
+	StatusBus(Supplier<StatusSnapshot> source) {
+		this.source = source;
+	}
+
+	/**
+	 * @param subscriber called with a snapshot after the status changed, on the thread of the bus
+	 */
+	void subscribe(Consumer<StatusSnapshot> subscriber) {
+		subscribers.add(subscriber);
+	}
+
+	/**
+	 * @param subscriber called with a snapshot after the status changed, on the event dispatch thread
+	 */
+	void subscribeOnEdt(Consumer<StatusSnapshot> subscriber) {
+		AtomicReference<StatusSnapshot> pending = new AtomicReference<>();
+		subscribers.add(snapshot -> {
+			if (pending.getAndSet(snapshot) == null) {
+				// Not queued on the event dispatch thread yet
+				SwingUtilities.invokeLater(() -> subscriber.accept(pending.getAndSet(null)));
+			}
+		});
+	}
+
+	/**
+	 * The status changed. Never blocks
+	 */
+	void changed() {
+		if (scheduled.compareAndSet(false, true)) {
+			executorService.schedule(this::deliver, COALESCE_WINDOW_IN_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void deliver() {
+		// Changes from now on need another delivery, since they may be missed by this snapshot
+		scheduled.set(false);
+		StatusSnapshot snapshot = source.get();
+		for (Consumer<StatusSnapshot> subscriber : subscribers) {
+			try {
+				subscriber.accept(snapshot);
+			}
+			catch (RuntimeException e) {
+				System.err.println("A status subscriber failed");
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package nl.inventid.rfidReader2keyboard;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import lombok.Getter;
+import lombok.ToString;
+import nl.inventid.rfidReader2keyboard.reader.TerminalHealth;
+
+/**
+ * The status of the system at one moment, which never changes, so it can be handed to any thread
+ */
+@Getter
+@ToString
+public final class StatusSnapshot {
+
+	private final boolean running;
+	private final boolean terminalsDetected;
+	private final boolean schedulersStarted;
+	private final boolean readerStarted;
+	private final boolean readerRunning;
+	private final boolean foundReader;
+	private final Map<String, TerminalHealth> terminalHealth;
+
+	StatusSnapshot(SystemStatus status) {
+		this.running = status.isRunning();
+		this.terminalsDetected = status.isTerminalsDetected();
+		this.schedulersStarted = status.isSchedulersStarted();
+		this.readerStarted = status.isReaderStarted();
+		this.readerRunning = status.isReaderRunning();
+		this.foundReader = status.isFoundReader();
+		this.terminalHealth = Collections.unmodifiableMap(new TreeMap<>(status.getTerminalHealth()));
+	}
+}
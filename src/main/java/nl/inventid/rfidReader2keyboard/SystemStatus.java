@@ -1,66 +1,116 @@
 package nl.inventid.rfidReader2keyboard;
 
-import java.util.Optional;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
 
 import lombok.Getter;
 import lombok.ToString;
+import nl.inventid.rfidReader2keyboard.reader.TerminalHealth;
 
 /**
  * This class functions as a global status class which communicates the status between the reader and the gui
  */
-@ToString
+@ToString(exclude = "bus")
 public class SystemStatus {
 
 	@Getter
-	private boolean running;
+	private volatile boolean running;
 
 	@Getter
-	private boolean terminalsDetected;
+	private volatile boolean terminalsDetected;
 
 	@Getter
-	private boolean schedulersStarted;
+	private volatile boolean schedulersStarted;
 
 	@Getter
-	private boolean readerStarted;
+	private volatile boolean readerStarted;
 
 	@Getter
-	private boolean readerRunning;
+	private volatile boolean readerRunning;
 
 	@Getter
-	private boolean foundReader;
+	private volatile boolean foundReader;
 
-	private Optional<Runnable> onChangeAction = Optional.empty();
+	private final Map<String, TerminalHealth> terminalHealth = new ConcurrentSkipListMap<>();
 
-	public void onChange(Runnable action) {
-		this.onChangeAction = Optional.ofNullable(action);
+	private final StatusBus bus = new StatusBus(this::snapshot);
+
+	/**
+	 * @param subscriber called with a snapshot after the status changed (a burst of changes is delivered once), on a
+	 *                   thread of its own
+	 */
+	public void subscribe(Consumer<StatusSnapshot> subscriber) {
+		bus.subscribe(subscriber);
+	}
+
+	/**
+	 * @param subscriber called with a snapshot after the status changed (a burst of changes is delivered once), on the
+	 *                   event dispatch thread of Swing
+	 */
+	public void subscribeOnEdt(Consumer<StatusSnapshot> subscriber) {
+		bus.subscribeOnEdt(subscriber);
+	}
+
+	/**
+	 * @return the current status, which never changes
+	 */
+	public StatusSnapshot snapshot() {
+		return new StatusSnapshot(this);
 	}
 
 	public void setRunning(boolean running) {
 		this.running = running;
-		onChangeAction.ifPresent(Runnable::run);
+		bus.changed();
 	}
 
 	public void setTerminalsDetected(boolean terminalsDetected) {
 		this.terminalsDetected = terminalsDetected;
-		onChangeAction.ifPresent(Runnable::run);
+		bus.changed();
 	}
 
 	public void setSchedulersStarted(boolean schedulersStarted) {
 		this.schedulersStarted = schedulersStarted;
-		onChangeAction.ifPresent(Runnable::run);
+		bus.changed();
 	}
 
 	public void setReaderStarted(boolean readerStarted) {
 		this.readerStarted = readerStarted;
-		onChangeAction.ifPresent(Runnable::run);
+		bus.changed();
 	}
 
 	public void setReaderRunning(boolean readerRunning) {
 		this.readerRunning = readerRunning;
-		onChangeAction.ifPresent(Runnable::run);
+		bus.changed();
 	}
 
 	public void setFoundReader(boolean foundReader) {
 		this.foundReader = foundReader;
+		bus.changed();
+	}
+
+	/**
+	 * @return the health of each used terminal, by its name
+	 */
+	public Map<String, TerminalHealth> getTerminalHealth() {
+		return Collections.unmodifiableMap(terminalHealth);
+	}
+
+	public void setTerminalHealth(String terminalName, TerminalHealth health) {
+		if (terminalHealth.put(terminalName, health) != health) {
+			bus.changed();
+		}
+	}
+
+	/**
+	 * Forget the health of a terminal, since it is no longer attached or used
+	 *
+	 * @param terminalName the name of the terminal
+	 */
+	public void removeTerminalHealth(String terminalName) {
+		if (terminalHealth.remove(terminalName) != null) {
+			bus.changed();
+		}
 	}
 }
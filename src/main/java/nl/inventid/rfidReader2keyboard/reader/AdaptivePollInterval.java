@@ -0,0 +1,73 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long to wait before the next poll of a terminal. Right after activity (a card being put on or taken off
+ * the terminal) the terminal is polled at the floor interval, since more cards are likely to follow. After the hot
+ * period without activity the interval doubles every minute, until it reaches the ceiling. Any activity, or the
+ * terminal being (re)attached, brings the interval back to the floor at once.
+ */
+class AdaptivePollInterval {
+
+	static final long HOT_PERIOD_IN_MS = 30_000;
+	static final long DOUBLING_PERIOD_IN_MS = 60_000;
+
+	private final long floorInMs;
+	private final long ceilingInMs;
+
+	private volatile long lastActivity = System.nanoTime();
+	private boolean cardPresent;
+
+	/**
+	 * @param floorInMs   the shortest interval, used right after activity
+	 * @param ceilingInMs the longest interval, used when the terminal has been idle for a long time
+	 */
+	AdaptivePollInterval(long floorInMs, long ceilingInMs) {
+		this.floorInMs = Math.max(1, floorInMs);
+		this.ceilingInMs = Math.max(this.floorInMs, ceilingInMs);
+	}
+
+	/**
+	 * Called after each poll, by the polling thread only
+	 *
+	 * @param cardPresent whether the poll found a card
+	 * @return the time to wait until the next poll, in milliseconds
+	 */
+	long next(boolean cardPresent) {
+		return next(cardPresent, System.nanoTime());
+	}
+
+	/**
+	 * @param cardPresent whether the poll found a card
+	 * @param now         the current System.nanoTime()
+	 * @return the time to wait until the next poll, in milliseconds
+	 */
+	long next(boolean cardPresent, long now) {
+		if (cardPresent != this.cardPresent) {
+			this.cardPresent = cardPresent;
+			lastActivity = now;
+		}
+		long idleInMs = TimeUnit.NANOSECONDS.toMillis(now - lastActivity) - HOT_PERIOD_IN_MS;
+		if (idleInMs <= 0) {
+			return floorInMs;
+		}
+		double interval = floorInMs * Math.pow(2, (double) idleInMs / DOUBLING_PERIOD_IN_MS);
+		return (long) Math.min(ceilingInMs, interval);
+	}
+
+	/**
+	 * Poll at the floor interval again, e.g. because the terminal was just plugged in
+	 */
+	void reset() {
+		lastActivity = System.nanoTime();
+	}
+
+	long getFloorInMs() {
+		return floorInMs;
+	}
+
+	long getCeilingInMs() {
+		return ceilingInMs;
+	}
+}
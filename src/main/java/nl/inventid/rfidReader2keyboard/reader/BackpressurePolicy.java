@@ -0,0 +1,19 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * What to do with a scan when the output queue is full
+ */
+public enum BackpressurePolicy {
+	/**
+	 * Wait until there is room in the queue. No scan is ever lost, but the read pipeline stalls
+	 */
+	BLOCK,
+	/**
+	 * Make room by dropping the oldest scan which was not output yet
+	 */
+	DROP_OLDEST,
+	/**
+	 * Drop a scan if the same card of the same terminal is still waiting to be output, otherwise wait for room
+	 */
+	COALESCE,
+}
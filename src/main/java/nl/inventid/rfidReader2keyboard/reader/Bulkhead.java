@@ -0,0 +1,226 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of long-lived workers which isolates the caller from calls which may hang (native PC/SC calls can
+ * block indefinitely if a card is removed halfway). When a call does not finish in time, the worker running it is
+ * retired and replaced by a fresh one, so a hung worker can never starve the next call. The retired worker exits as
+ * soon as the native call returns (if ever).
+ */
+class Bulkhead {
+
+	private final String name;
+	private final int poolSize;
+	private final int maxRetiredWorkers;
+	private final Runnable onWorkerStart;
+	private final Runnable onWorkerExit;
+	private final BlockingQueue<Task<?>> queue;
+	private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+	private final Set<Worker> hungWorkers = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger workerCounter = new AtomicInteger();
+	private final AtomicInteger retiredWorkers = new AtomicInteger();
+
+	private volatile boolean shutdown;
+
+	/**
+	 * @param name              the name used for the worker threads
+	 * @param poolSize          the amount of workers available for calls
+	 * @param maxRetiredWorkers the amount of hung workers we tolerate before refusing to start replacements
+	 */
+	Bulkhead(String name, int poolSize, int maxRetiredWorkers) {
+		this(name, poolSize, maxRetiredWorkers, () -> {
+		}, () -> {
+		});
+	}
+
+	/**
+	 * @param name              the name used for the worker threads
+	 * @param poolSize          the amount of workers available for calls
+	 * @param maxRetiredWorkers the amount of hung workers we tolerate before refusing to start replacements
+	 * @param onWorkerStart     run on each worker before it takes calls, e.g. to set up what its calls need
+	 * @param onWorkerExit      run on each worker when it exits, also when it was retired and its call returned
+	 */
+	Bulkhead(String name, int poolSize, int maxRetiredWorkers, Runnable onWorkerStart, Runnable onWorkerExit) {
+		this.name = name;
+		this.poolSize = poolSize;
+		this.maxRetiredWorkers = maxRetiredWorkers;
+		this.onWorkerStart = onWorkerStart;
+		this.onWorkerExit = onWorkerExit;
+		this.queue = new ArrayBlockingQueue<>(poolSize);
+		for (int i = 0; i < poolSize; i++) {
+			startWorker();
+		}
+	}
+
+	/**
+	 * Run the callable on one of the workers and wait for its result
+	 *
+	 * @param callable the action to isolate
+	 * @param timeout  the maximum time to wait for the result
+	 * @param unit     the unit of the timeout
+	 * @return the result of the callable
+	 * @throws TimeoutException           if the callable did not finish in time. Its worker is retired
+	 * @throws ExecutionException         if the callable threw an exception
+	 * @throws RejectedExecutionException if all workers are busy or the bulkhead is shut down
+	 */
+	<T> T call(Callable<T> callable, long timeout, TimeUnit unit)
+			throws TimeoutException, ExecutionException, InterruptedException {
+		if (shutdown) {
+			throw new RejectedExecutionException("Bulkhead " + name + " is shut down");
+		}
+		Task<T> task = new Task<>(callable);
+		if (!queue.offer(task)) {
+			throw new RejectedExecutionException("All workers of bulkhead " + name + " are busy");
+		}
+		try {
+			return task.get(timeout, unit);
+		}
+		catch (TimeoutException e) {
+			task.cancel(true);
+			Worker runner = task.runner;
+			if (runner != null) {
+				retire(runner);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Stop all workers. Calls which are still running are interrupted
+	 */
+	void shutdown() {
+		shutdown = true;
+		workers.forEach(Worker::retire);
+		workers.clear();
+	}
+
+	/**
+	 * @return the amount of workers which are available for calls
+	 */
+	int getActiveWorkers() {
+		return workers.size();
+	}
+
+	/**
+	 * @return the amount of workers which were retired since the start
+	 */
+	int getRetiredWorkers() {
+		return retiredWorkers.get();
+	}
+
+	/**
+	 * @return the amount of retired workers which are still stuck in their call
+	 */
+	int getHungWorkers() {
+		return hungWorkers.size();
+	}
+
+	private void retire(Worker worker) {
+		if (!workers.remove(worker)) {
+			return;
+		}
+		hungWorkers.add(worker);
+		worker.retire();
+		int retired = retiredWorkers.incrementAndGet();
+		System.err.println("Retired hung worker " + worker.getName() + " (" + retired + " retired so far)");
+		if (hungWorkers.size() > maxRetiredWorkers) {
+			System.err.println("Too many hung workers in bulkhead " + name + ", not starting a replacement until one "
+					+ "returns");
+			return;
+		}
+		startWorker();
+	}
+
+	/**
+	 * A retired worker returned from its call, so the replacement which may have been held back can start now
+	 */
+	private void returned(Worker worker) {
+		if (hungWorkers.remove(worker)) {
+			startWorker();
+		}
+	}
+
+	private synchronized void startWorker() {
+		if (shutdown || workers.size() >= poolSize) {
+			return;
+		}
+		Worker worker = new Worker(this, name + "-" + workerCounter.incrementAndGet());
+		workers.add(worker);
+		worker.start();
+	}
+
+	/**
+	 * A FutureTask which remembers the worker running it, so we can retire that worker when the task hangs
+	 */
+	private static class Task<T> extends FutureTask<T> {
+
+		private volatile Worker runner;
+
+		Task(Callable<T> callable) {
+			super(callable);
+		}
+	}
+
+	/**
+	 * A worker simply takes tasks from the queue of the bulkhead until it is retired
+	 */
+	private static class Worker extends Thread {
+
+		private final Bulkhead bulkhead;
+		private volatile boolean retired;
+
+		Worker(Bulkhead bulkhead, String name) {
+			super(name);
+			this.bulkhead = bulkhead;
+			setDaemon(true);
+		}
+
+		void retire() {
+			retired = true;
+			interrupt();
+		}
+
+		@Override
+		public void run() {
+			try {
+				bulkhead.onWorkerStart.run();
+				takeTasks();
+			}
+			finally {
+				bulkhead.onWorkerExit.run();
+			}
+			bulkhead.returned(this);
+		}
+
+		private void takeTasks() {
+			while (!retired) {
+				Task<?> task;
+				try {
+					task = bulkhead.queue.poll(1, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					continue;
+				}
+				if (task == null || task.isCancelled()) {
+					continue;
+				}
+				task.runner = this;
+				task.run();
+				task.runner = null;
+				// Clear any interrupt from a cancellation, so it does not leak into the next task
+				Thread.interrupted();
+			}
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+import java.nio.ByteBuffer;
+
+import lombok.Getter;
+
+/**
+ * A connection to the card in the field of a terminal, which stays open for as long as the card stays there. This
+ * saves a connect (and a card reset) for every command. The terminal itself is configured once, on the first
+ * connection after the terminal was attached. Any failure closes the connection, so the next command connects again.
+ */
+class CardSession {
+
+	private static final String PROTOCOL = "T=1";
+	// A uid of at most 10 bytes followed by SW1 SW2, with plenty of room to spare
+	private static final int RESPONSE_BUFFER_SIZE = 64;
+	private static final byte SUCCESS_SW1 = (byte) 0x90;
+	private static final byte SUCCESS_SW2 = (byte) 0x00;
+
+	private final CardTerminal terminal;
+	private final ScanMetrics metrics;
+
+	@Getter
+	private volatile boolean readerConfigured;
+
+	private final ByteBuffer readCommand = ByteBuffer.wrap(Commands.READ.getBytes());
+	private final ByteBuffer response = ByteBuffer.allocate(RESPONSE_BUFFER_SIZE);
+
+	private Card card;
+	private CardChannel channel;
+	private ReadResult lastResult;
+
+	/**
+	 * @param terminal         the terminal to talk to
+	 * @param readerConfigured whether the terminal was already configured since it was attached
+	 * @param metrics          where to record the latency of connecting and of each command
+	 */
+	CardSession(CardTerminal terminal, boolean readerConfigured, ScanMetrics metrics) {
+		this.terminal = terminal;
+		this.metrics = metrics;
+		this.readerConfigured = readerConfigured;
+	}
+
+	/**
+	 * Send a command to the card, connecting to it first if there is no open connection
+	 *
+	 * @param command the command to send
+	 * @return the response of the card
+	 * @throws CardException in case of an error, after which the connection is closed
+	 */
+	synchronized ResponseAPDU transmit(CommandAPDU command) throws CardException {
+		try {
+			CardChannel connected = connect();
+			long start = System.nanoTime();
+			ResponseAPDU response = connected.transmit(command);
+			metrics.recordSince(ScanStage.APDU, start);
+			return response;
+		}
+		catch (CardException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read the uid of the card, connecting to it first if there is no open connection. The response is decoded from a
+	 * buffer owned by this session, and as long as the same card is read the same result is returned, so repeated
+	 * reads do not allocate.
+	 *
+	 * @return the uid of the card, or why it could not be read
+	 * @throws CardException in case of an error, after which the connection is closed
+	 */
+	synchronized ReadResult readUid() throws CardException {
+		try {
+			readCommand.rewind();
+			response.clear();
+			CardChannel connected = connect();
+			long start = System.nanoTime();
+			connected.transmit(readCommand, response);
+			metrics.recordSince(ScanStage.APDU, start);
+			response.flip();
+		}
+		catch (CardException | RuntimeException e) {
+			close();
+			throw e;
+		}
+
+		int length = response.remaining();
+		if (length < 2 || response.get(length - 2) != SUCCESS_SW1 || response.get(length - 1) != SUCCESS_SW2) {
+			// Unsuccessful response
+			close();
+			return ReadResult.READ_FAILURE;
+		}
+		int uidLength = length - 2;
+		if (uidLength == 0) {
+			// Empty response (should not happen, but heh)
+			close();
+			return ReadResult.EMPTY_CODE;
+		}
+		if (uidLength > Uid.MAX_LENGTH) {
+			close();
+			return ReadResult.READ_FAILURE;
+		}
+		if (lastResult == null || !lastResult.getUid().matches(response, uidLength)) {
+			lastResult = ReadResult.card(Uid.of(response, uidLength));
+		}
+		return lastResult;
+	}
+
+	/**
+	 * Ask the terminal whether a card is present, without connecting to it
+	 *
+	 * @return true if there is a card in the field of the terminal
+	 * @throws CardException if the terminal could not be queried
+	 */
+	boolean isCardPresent() throws CardException {
+		return terminal.isCardPresent();
+	}
+
+	/**
+	 * @return true if there is an open connection to a card
+	 */
+	synchronized boolean isConnected() {
+		return card != null;
+	}
+
+	/**
+	 * Close the connection to the card, if any. Fails silently, since the card is most likely gone already
+	 */
+	synchronized void close() {
+		if (card == null) {
+			return;
+		}
+		try {
+			card.disconnect(false);
+		}
+		catch (CardException | RuntimeException e) {
+			// Card was removed, nothing to disconnect from
+		}
+		card = null;
+		channel = null;
+	}
+
+	private CardChannel connect() throws CardException {
+		if (channel != null) {
+			return channel;
+		}
+		long start = System.nanoTime();
+		card = terminal.connect(PROTOCOL);
+		channel = card.getBasicChannel();
+		metrics.recordSince(ScanStage.CONNECT, start);
+		if (!readerConfigured) {
+			// Disable the buzzer
+			channel.transmit(Commands.DISABLE_BUZZER);
+			readerConfigured = true;
+		}
+		return channel;
+	}
+}
@@ -0,0 +1,117 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Puts the uid of each scan on the clipboard and pastes it, followed by enter. This takes a handful of key events
+ * whatever the length of the uid, instead of two for every character. The previous content of the clipboard is lost.
+ * <p>
+ * The application only reads the clipboard once it handles the paste, which may be after the next scan was put on the
+ * clipboard, so it would paste that scan twice. So the next scan waits until the application requested the previous
+ * one, for at most PASTE_TIMEOUT_IN_MS after it was pasted. Platforms which hand over the clipboard right away (e.g.
+ * Windows) never tell when it is read, so there consecutive taps are at least that far apart.
+ */
+class ClipboardSink implements ScanSink {
+
+	private static final long PASTE_TIMEOUT_IN_MS = 250;
+
+	private final Clipboard clipboard;
+	private final KeyboardBackend backend;
+	private final int[] pasteAndEnter;
+
+	// The scan pasted last, only used by the output thread
+	private Paste previous;
+
+	/**
+	 * @param backend the backend which injects the paste shortcut
+	 */
+	ClipboardSink(KeyboardBackend backend) {
+		this.clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+		this.backend = backend;
+		int modifier = System.getProperty("os.name").toLowerCase().contains("mac") ? KeyEvent.VK_META
+				: KeyEvent.VK_CONTROL;
+		this.pasteAndEnter = new int[] { modifier, KeyEvent.VK_V, -KeyEvent.VK_V, -modifier, KeyEvent.VK_ENTER,
+				-KeyEvent.VK_ENTER };
+	}
+
+	@Override
+	public boolean emit(ScanEvent event) {
+		if (previous != null) {
+			previous.awaitPasted();
+		}
+		Paste paste = new Paste(event.getUid().toString());
+		clipboard.setContents(paste, paste);
+		paste.pastedAt = System.nanoTime();
+		backend.send(pasteAndEnter, pasteAndEnter.length);
+		previous = paste;
+		return true;
+	}
+
+	@Override
+	public void close() {
+		backend.close();
+	}
+
+	/**
+	 * The content of the clipboard for a scan, which notices when the application reads it
+	 */
+	private static class Paste implements Transferable, ClipboardOwner {
+
+		private final StringSelection selection;
+		private final CountDownLatch pasted = new CountDownLatch(1);
+
+		// Set once the scan is on the clipboard, reads before that are the platform copying it right away
+		private volatile long pastedAt;
+
+		Paste(String uid) {
+			this.selection = new StringSelection(uid);
+		}
+
+		/**
+		 * Wait until the application read the clipboard, or until PASTE_TIMEOUT_IN_MS passed since the paste
+		 */
+		void awaitPasted() {
+			long remaining = PASTE_TIMEOUT_IN_MS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pastedAt);
+			try {
+				pasted.await(remaining, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public DataFlavor[] getTransferDataFlavors() {
+			return selection.getTransferDataFlavors();
+		}
+
+		@Override
+		public boolean isDataFlavorSupported(DataFlavor flavor) {
+			return selection.isDataFlavorSupported(flavor);
+		}
+
+		@Override
+		public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+			if (pastedAt != 0) {
+				pasted.countDown();
+			}
+			return selection.getTransferData(flavor);
+		}
+
+		@Override
+		public void lostOwnership(Clipboard clipboard, Transferable contents) {
+			// Someone else owns the clipboard now, so there is nothing left to wait for
+			pasted.countDown();
+		}
+	}
+}
@@ -2,6 +2,8 @@ package nl.inventid.rfidReader2keyboard.reader;
 
 import javax.smartcardio.CommandAPDU;
 
+import com.google.common.primitives.Bytes;
+
 public class Commands {
 	static final CommandAPDU READ =
 			new CommandAPDU(new byte[] { (byte) 0xFF, (byte) 0xCA, (byte) 0x00, (byte) 0x00, (byte) 0x00 });
@@ -15,4 +17,14 @@ public class Commands {
 	// default. http://www.acs.com.hk/download-manual/419/API-ACR122U-2.03.pdf
 	static final byte[] ONE_BUZZ_DATA =
 			new byte[] { (byte) 0x00, (byte) 0x01, (byte) 0x02, (byte) 0x02 };
+
+	static final CommandAPDU ONE_BUZZ = new CommandAPDU(Bytes.concat(ONE_BUZZ_APDU, ONE_BUZZ_DATA));
+
+	// Blink the red led and beep along with it, three times 100ms, to tell a rejected card apart from a typed one
+	static final byte[] REJECT_BUZZ_APDU =
+			new byte[] { (byte) 0xFF, (byte) 0x00, (byte) 0x40, (byte) 0x50, (byte) 0x04 };
+	static final byte[] REJECT_BUZZ_DATA =
+			new byte[] { (byte) 0x01, (byte) 0x01, (byte) 0x03, (byte) 0x01 };
+
+	static final CommandAPDU REJECT_BUZZ = new CommandAPDU(Bytes.concat(REJECT_BUZZ_APDU, REJECT_BUZZ_DATA));
 }
@@ -0,0 +1,88 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether a read card should be output. A card is output once per presence: as long as it stays on the
+ * terminal it is not output again, until it is removed. On top of that, a card which was output recently (within the
+ * window) is not output again when it is tapped again, e.g. when it is pulled away and put back. The recently output
+ * cards are kept in a bounded cache, so lookups are O(1) and memory is fixed.
+ *
+ * Each read pipeline has a deduplicator of its own, so it is not thread safe.
+ */
+class Deduplicator {
+
+	private final long windowInNanos;
+	private final Map<Uid, Long> recentlyOutput;
+
+	private Uid presentUid;
+
+	/**
+	 * @param windowInMs the time in which a re-tapped card is not output again, 0 to only deduplicate on presence
+	 * @param capacity   the maximum amount of recent cards to remember
+	 */
+	Deduplicator(long windowInMs, int capacity) {
+		this.windowInNanos = TimeUnit.MILLISECONDS.toNanos(windowInMs);
+		this.recentlyOutput = new LinkedHashMap<Uid, Long>(capacity, 0.75f, false) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Uid, Long> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * @param uid the card which was read
+	 * @return true if the card should be output
+	 */
+	boolean shouldOutput(Uid uid) {
+		return shouldOutput(uid, System.nanoTime());
+	}
+
+	/**
+	 * @param uid the card which was read
+	 * @param now the current System.nanoTime()
+	 * @return true if the card should be output
+	 */
+	boolean shouldOutput(Uid uid, long now) {
+		if (uid.equals(presentUid)) {
+			// Still the same presence of the card
+			return false;
+		}
+		presentUid = uid;
+		if (windowInNanos <= 0) {
+			return true;
+		}
+		expire(now);
+		Long outputAt = recentlyOutput.get(uid);
+		if (outputAt != null && now - outputAt < windowInNanos) {
+			// Re-tapped within the window
+			return false;
+		}
+		// Re-insert, so the cache stays ordered on the time of output
+		recentlyOutput.remove(uid);
+		recentlyOutput.put(uid, now);
+		return true;
+	}
+
+	/**
+	 * The terminal reported that there is no card (anymore), so the presence of the last card ended
+	 */
+	void cardAbsent() {
+		presentUid = null;
+	}
+
+	/**
+	 * Remove the cards which were output before the window. The cache is ordered on the time of output, so this stops
+	 * at the first card within the window
+	 */
+	private void expire(long now) {
+		Iterator<Long> outputTimes = recentlyOutput.values().iterator();
+		while (outputTimes.hasNext() && now - outputTimes.next() >= windowInNanos) {
+			outputTimes.remove();
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * What happened to a scan which was handed to the output
+ */
+public enum DeliveryStatus {
+	/**
+	 * The scan was typed
+	 */
+	TYPED,
+	/**
+	 * Typing the scan failed
+	 */
+	FAILED,
+	/**
+	 * The scan was dropped, since the output queue was full or the sink had nobody to output it to
+	 */
+	DROPPED,
+}
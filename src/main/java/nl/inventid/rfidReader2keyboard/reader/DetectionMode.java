@@ -0,0 +1,16 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * The way in which a Reader finds out a card was placed on the terminal
+ */
+public enum DetectionMode {
+	/**
+	 * Block on the PC/SC status change notification (SCardGetStatusChange) and only read once a card is present
+	 */
+	EVENT,
+	/**
+	 * Simply try to read a card every poll interval, and handle all exceptions. Slower, but works on platforms on which
+	 * the status change notification is broken
+	 */
+	POLL,
+}
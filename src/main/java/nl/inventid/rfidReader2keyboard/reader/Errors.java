@@ -1,14 +1,118 @@
 package nl.inventid.rfidReader2keyboard.reader;
 
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardNotPresentException;
+
+import jnasmartcardio.Smartcardio;
+
+/**
+ * The PC/SC result codes (see winscard.h) we know how to handle. Errors are classified on these numeric codes, since
+ * the exceptions and their messages are inconsistent across platforms.
+ */
 public class Errors {
-	// Annoyingly catching java errors which are inconsistent across platforms
-	static final String NO_CONNECT = "connect() failed";
-	static final String EMPTY_CODE = "Scanned code was empty";
-	static final String NO_CARD = "sun.security.smartcardio.PCSCException: SCARD_E_NO_SMARTCARD";
-	static final String REMOVED_CARD = "sun.security.smartcardio.PCSCException: SCARD_W_REMOVED_CARD";
-	static final String READER_UNAVAILABLE =
-			"sun.security.smartcardio.PCSCException: SCARD_E_READER_UNAVAILABLE";
-	static final String CARD_READ_FAILURE = "Card read failure";
-	static final String FAILED_CARD_TRANSACTION =
-			"sun.security.smartcardio.PCSCException: SCARD_E_NOT_TRANSACTED";
+	static final int SCARD_S_SUCCESS = 0x00000000;
+	static final int SCARD_E_INVALID_HANDLE = 0x80100003;
+	static final int SCARD_E_UNKNOWN_READER = 0x80100009;
+	static final int SCARD_E_TIMEOUT = 0x8010000A;
+	static final int SCARD_E_SHARING_VIOLATION = 0x8010000B;
+	static final int SCARD_E_NO_SMARTCARD = 0x8010000C;
+	static final int SCARD_E_PROTO_MISMATCH = 0x8010000F;
+	static final int SCARD_F_COMM_ERROR = 0x80100013;
+	static final int SCARD_E_NOT_TRANSACTED = 0x80100016;
+	static final int SCARD_E_READER_UNAVAILABLE = 0x80100017;
+	static final int SCARD_E_NO_SERVICE = 0x8010001D;
+	static final int SCARD_E_SERVICE_STOPPED = 0x8010001E;
+	static final int SCARD_E_NO_READERS_AVAILABLE = 0x8010002E;
+	static final int SCARD_W_UNRESPONSIVE_CARD = 0x80100066;
+	static final int SCARD_W_UNPOWERED_CARD = 0x80100067;
+	static final int SCARD_W_RESET_CARD = 0x80100068;
+	static final int SCARD_W_REMOVED_CARD = 0x80100069;
+	// Not a PC/SC code, used for failures which did not carry one
+	static final int UNKNOWN = 0xFFFFFFFF;
+
+	private static final int[] CODES = new int[] { SCARD_S_SUCCESS, SCARD_E_INVALID_HANDLE, SCARD_E_UNKNOWN_READER,
+			SCARD_E_TIMEOUT, SCARD_E_SHARING_VIOLATION, SCARD_E_NO_SMARTCARD, SCARD_E_PROTO_MISMATCH, SCARD_F_COMM_ERROR,
+			SCARD_E_NOT_TRANSACTED, SCARD_E_READER_UNAVAILABLE, SCARD_E_NO_SERVICE, SCARD_E_SERVICE_STOPPED,
+			SCARD_E_NO_READERS_AVAILABLE, SCARD_W_UNRESPONSIVE_CARD, SCARD_W_UNPOWERED_CARD, SCARD_W_RESET_CARD,
+			SCARD_W_REMOVED_CARD };
+	private static final String[] NAMES = new String[] { "SCARD_S_SUCCESS", "SCARD_E_INVALID_HANDLE",
+			"SCARD_E_UNKNOWN_READER", "SCARD_E_TIMEOUT", "SCARD_E_SHARING_VIOLATION", "SCARD_E_NO_SMARTCARD",
+			"SCARD_E_PROTO_MISMATCH", "SCARD_F_COMM_ERROR", "SCARD_E_NOT_TRANSACTED", "SCARD_E_READER_UNAVAILABLE",
+			"SCARD_E_NO_SERVICE", "SCARD_E_SERVICE_STOPPED", "SCARD_E_NO_READERS_AVAILABLE", "SCARD_W_UNRESPONSIVE_CARD",
+			"SCARD_W_UNPOWERED_CARD", "SCARD_W_RESET_CARD", "SCARD_W_REMOVED_CARD" };
+
+	/**
+	 * @param code a PC/SC result code
+	 * @return what the code means for an attempt to read a card
+	 */
+	static ReadOutcome classify(int code) {
+		switch (code) {
+			case SCARD_S_SUCCESS:
+				return ReadOutcome.CARD;
+			// Could not reliably connect to the card (this can mean there is simply no card)
+			case SCARD_E_NO_SMARTCARD:
+			case SCARD_E_PROTO_MISMATCH:
+			case SCARD_W_UNRESPONSIVE_CARD:
+			case SCARD_W_UNPOWERED_CARD:
+				return ReadOutcome.NO_CARD;
+			case SCARD_W_REMOVED_CARD:
+			case SCARD_W_RESET_CARD:
+				return ReadOutcome.REMOVED;
+			case SCARD_E_READER_UNAVAILABLE:
+			case SCARD_E_UNKNOWN_READER:
+			case SCARD_E_NO_READERS_AVAILABLE:
+			case SCARD_E_INVALID_HANDLE:
+			case SCARD_E_NO_SERVICE:
+			case SCARD_E_SERVICE_STOPPED:
+				return ReadOutcome.READER_UNAVAILABLE;
+			case SCARD_E_NOT_TRANSACTED:
+			case SCARD_E_SHARING_VIOLATION:
+			case SCARD_F_COMM_ERROR:
+				return ReadOutcome.TRANSACTION_FAILED;
+			case SCARD_E_TIMEOUT:
+				return ReadOutcome.TIMEOUT;
+			default:
+				return ReadOutcome.UNKNOWN_ERROR;
+		}
+	}
+
+	/**
+	 * Get the PC/SC result code of a failure. The jnasmartcardio exceptions carry the code itself. For any other
+	 * provider we fall back on the name of the code in the message
+	 *
+	 * @param e the failure
+	 * @return the PC/SC result code, or UNKNOWN
+	 */
+	static int codeOf(CardException e) {
+		if (e instanceof Smartcardio.JnaPCSCException && ((Smartcardio.JnaPCSCException) e).code != 0) {
+			// Windows reports the code as a negative int, other platforms as a positive long. Only the lower 32 bits
+			// are relevant
+			return (int) ((Smartcardio.JnaPCSCException) e).code;
+		}
+		if (e instanceof CardNotPresentException) {
+			return SCARD_E_NO_SMARTCARD;
+		}
+		String message = e.getMessage();
+		if (message != null) {
+			for (int i = 0; i < NAMES.length; i++) {
+				if (message.contains(NAMES[i])) {
+					return CODES[i];
+				}
+			}
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * @param code a PC/SC result code
+	 * @return the name of the code, or its hexadecimal value if we do not know it
+	 */
+	static String name(int code) {
+		for (int i = 0; i < CODES.length; i++) {
+			if (CODES[i] == code) {
+				return NAMES[i];
+			}
+		}
+		return String.format("0x%08X", code);
+	}
 }
@@ -0,0 +1,91 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the events of a single terminal. Counting is a single LongAdder increment, which does not lock and hardly
+ * contends, since it is done for every poll. Snapshots (also resetting ones) only read the counters, so they never
+ * stop the counting threads. The rates are updated by calling tick() at a fixed interval.
+ */
+public class EventCounters {
+
+	static final int TICK_IN_SECONDS = 5;
+
+	private static final ReaderEvent[] EVENTS = ReaderEvent.values();
+	private static final double[] ALPHAS = new double[] { alpha(1), alpha(5), alpha(15) };
+
+	private final LongAdder[] counters = new LongAdder[EVENTS.length];
+	// The totals at the last reset and at the last tick, only used while holding the lock of this object
+	private final long[] atReset = new long[EVENTS.length];
+	private final long[] atTick = new long[EVENTS.length];
+	private final double[][] rates = new double[EVENTS.length][ALPHAS.length];
+
+	EventCounters() {
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param event the event which happened
+	 */
+	void increment(ReaderEvent event) {
+		counters[event.ordinal()].increment();
+	}
+
+	/**
+	 * @return the amount of times each event happened since the start
+	 */
+	public Map<ReaderEvent, Long> snapshot() {
+		Map<ReaderEvent, Long> snapshot = new EnumMap<>(ReaderEvent.class);
+		for (ReaderEvent event : EVENTS) {
+			snapshot.put(event, counters[event.ordinal()].sum());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return the amount of times each event happened since the previous reset
+	 */
+	public synchronized Map<ReaderEvent, Long> snapshotAndReset() {
+		Map<ReaderEvent, Long> snapshot = new EnumMap<>(ReaderEvent.class);
+		for (ReaderEvent event : EVENTS) {
+			long total = counters[event.ordinal()].sum();
+			snapshot.put(event, total - atReset[event.ordinal()]);
+			atReset[event.ordinal()] = total;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return the rate of each event
+	 */
+	public synchronized Map<ReaderEvent, EventRate> rates() {
+		Map<ReaderEvent, EventRate> snapshot = new EnumMap<>(ReaderEvent.class);
+		for (ReaderEvent event : EVENTS) {
+			double[] rate = rates[event.ordinal()];
+			snapshot.put(event, new EventRate(rate[0], rate[1], rate[2]));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Update the rates with the events since the previous tick. Should be called every TICK_IN_SECONDS
+	 */
+	synchronized void tick() {
+		for (int i = 0; i < EVENTS.length; i++) {
+			long total = counters[i].sum();
+			double perMinute = (total - atTick[i]) * 60.0 / TICK_IN_SECONDS;
+			atTick[i] = total;
+			for (int j = 0; j < ALPHAS.length; j++) {
+				rates[i][j] += ALPHAS[j] * (perMinute - rates[i][j]);
+			}
+		}
+	}
+
+	private static double alpha(int minutes) {
+		return 1 - Math.exp(-TICK_IN_SECONDS / (60.0 * minutes));
+	}
+}
@@ -0,0 +1,23 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The rate at which an event happened, per minute, as exponentially weighted moving averages over 1, 5 and 15
+ * minutes (like the load average of Unix)
+ */
+@Getter
+@ToString
+public final class EventRate {
+
+	private final double oneMinute;
+	private final double fiveMinutes;
+	private final double fifteenMinutes;
+
+	EventRate(double oneMinute, double fiveMinutes, double fifteenMinutes) {
+		this.oneMinute = oneMinute;
+		this.fiveMinutes = fiveMinutes;
+		this.fifteenMinutes = fifteenMinutes;
+	}
+}
@@ -0,0 +1,142 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tracks whether a terminal is alive, based on the results of the reads and status queries done on it, and decides
+ * when the terminal should be reconnected. A terminal is only reconnected after a few consecutive failures, or after
+ * something unexpected happened. When reconnecting does not make the terminal respond again, the next attempt waits
+ * for an exponentially growing backoff, so a terminal which is gone is not re-enumerated over and over.
+ */
+class HealthMonitor {
+
+	static final int MAX_CONSECUTIVE_FAILURES = 3;
+	static final long MIN_BACKOFF_IN_MS = 1000;
+	static final long MAX_BACKOFF_IN_MS = 60_000;
+
+	private final Consumer<TerminalHealth> onChange;
+
+	private TerminalHealth health = TerminalHealth.HEALTHY;
+	private int consecutiveFailures;
+	private long backoffInMs = MIN_BACKOFF_IN_MS;
+	private long nextAttemptAt;
+	private volatile long lastSuccess = System.nanoTime();
+
+	/**
+	 * @param onChange called with the new health whenever it changes, never while holding the lock of this monitor
+	 */
+	HealthMonitor(Consumer<TerminalHealth> onChange) {
+		this.onChange = onChange;
+	}
+
+	/**
+	 * The terminal responded
+	 */
+	void recordSuccess() {
+		lastSuccess = System.nanoTime();
+		TerminalHealth changed;
+		synchronized (this) {
+			consecutiveFailures = 0;
+			backoffInMs = MIN_BACKOFF_IN_MS;
+			changed = transition(TerminalHealth.HEALTHY);
+		}
+		fire(changed);
+	}
+
+	/**
+	 * The terminal failed to respond. After a few consecutive failures the terminal is degraded
+	 */
+	void recordFailure() {
+		TerminalHealth changed = null;
+		synchronized (this) {
+			if (++consecutiveFailures >= MAX_CONSECUTIVE_FAILURES && health == TerminalHealth.HEALTHY) {
+				changed = transition(TerminalHealth.DEGRADED);
+			}
+		}
+		fire(changed);
+	}
+
+	/**
+	 * Something unexpected happened, so the terminal should be reconnected at once
+	 */
+	void markDegraded() {
+		TerminalHealth changed = null;
+		synchronized (this) {
+			if (health == TerminalHealth.HEALTHY) {
+				changed = transition(TerminalHealth.DEGRADED);
+			}
+		}
+		fire(changed);
+	}
+
+	/**
+	 * Check whether the terminal should be reconnected now. If so, the caller must reconnect and report the result
+	 * with recordSuccess() or reconnectFailed()
+	 *
+	 * @return true if the terminal should be reconnected
+	 */
+	boolean shouldReconnect() {
+		TerminalHealth changed = null;
+		synchronized (this) {
+			if (health == TerminalHealth.DEGRADED) {
+				changed = transition(TerminalHealth.HALF_OPEN);
+			}
+			else if (health == TerminalHealth.OPEN && System.nanoTime() - nextAttemptAt >= 0) {
+				changed = transition(TerminalHealth.HALF_OPEN);
+			}
+		}
+		fire(changed);
+		return changed != null;
+	}
+
+	/**
+	 * Reconnecting did not make the terminal respond, wait for the backoff before trying again
+	 */
+	void reconnectFailed() {
+		TerminalHealth changed;
+		synchronized (this) {
+			nextAttemptAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffInMs);
+			backoffInMs = Math.min(MAX_BACKOFF_IN_MS, 2 * backoffInMs);
+			changed = transition(TerminalHealth.OPEN);
+		}
+		fire(changed);
+	}
+
+	/**
+	 * @param timeInMs the time without a response
+	 * @return true if the terminal did not respond for at least the given time
+	 */
+	boolean isSilentFor(long timeInMs) {
+		return System.nanoTime() - lastSuccess >= TimeUnit.MILLISECONDS.toNanos(timeInMs);
+	}
+
+	synchronized TerminalHealth getHealth() {
+		return health;
+	}
+
+	/**
+	 * @return the current health and, when open, the backoff before the next attempt. For logging
+	 */
+	synchronized String describe() {
+		if (health == TerminalHealth.OPEN) {
+			long waitInMs = TimeUnit.NANOSECONDS.toMillis(nextAttemptAt - System.nanoTime());
+			return health + " (next attempt in " + Math.max(0, waitInMs) + "ms)";
+		}
+		return health + " (" + consecutiveFailures + " consecutive failures)";
+	}
+
+	private TerminalHealth transition(TerminalHealth next) {
+		if (health == next) {
+			return null;
+		}
+		health = next;
+		return next;
+	}
+
+	private void fire(TerminalHealth changed) {
+		if (changed != null) {
+			onChange.accept(changed);
+		}
+	}
+}
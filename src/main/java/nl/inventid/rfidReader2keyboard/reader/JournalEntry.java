@@ -0,0 +1,26 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.time.Instant;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A scan as it was recorded in the scan journal
+ */
+@Getter
+@ToString
+public final class JournalEntry {
+
+	private final Instant timestamp;
+	private final String terminalName;
+	private final Uid uid;
+	private final DeliveryStatus status;
+
+	JournalEntry(Instant timestamp, String terminalName, Uid uid, DeliveryStatus status) {
+		this.timestamp = timestamp;
+		this.terminalName = terminalName;
+		this.uid = uid;
+		this.status = status;
+	}
+}
@@ -0,0 +1,14 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The directory of a journal is locked by another reader, e.g. a second instance of the software
+ */
+class JournalInUseException extends IOException {
+
+	JournalInUseException(Path directory) {
+		super("The journal in " + directory + " is in use by another reader");
+	}
+}
@@ -1,369 +1,148 @@
 package nl.inventid.rfidReader2keyboard.reader;
 
-import java.awt.*;
-import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import lombok.SneakyThrows;
 
 /**
- * Class handles the "typing" of the fetched data from the chip to the terminal
+ * Class handles the "typing" of the fetched data from the chip to the terminal. A whole payload is compiled into one
+ * batch of key events using a precompiled keystroke table, and handed to the backend at once.
  */
 public class Keyboard {
 
 	private static final int AUTO_DELAY_MS = 3;
+	private static final int COMPILED_UID_CACHE_SIZE = 64;
 
-	private final Robot robot;
+	private static KeyboardBackend robot;
+	private static UinputBackend uinput;
+
+	private final KeyboardBackend backend;
+	private final KeystrokeTable keystrokes;
+	private final Map<Uid, int[]> compiledUids = new LinkedHashMap<Uid, int[]>(COMPILED_UID_CACHE_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Uid, int[]> eldest) {
+			return size() > COMPILED_UID_CACHE_SIZE;
+		}
+	};
+
+	private int[] events = new int[0];
 
 	/**
 	 * Instanciates a new Keyboard
 	 */
-	@SneakyThrows
 	public Keyboard() {
-		this.robot = new Robot();
-		robot.setAutoDelay(AUTO_DELAY_MS);
-		System.out.println("Robot initialized with an autodelay of " + robot.getAutoDelay() + "ms");
+		this(robotBackend(), KeystrokeTable.US);
 	}
 
 	/**
-	 * Takes a sequence of characters and types them one-by-one
-	 *
-	 * @param characters the characters to type
+	 * @param backend    the backend which injects the key events
+	 * @param keystrokes the keystrokes of the keyboard layout to type with
 	 */
-	public void type(CharSequence characters) {
-		int length = characters.length();
-		for (int i = 0; i < length; i++) {
-			char character = characters.charAt(i);
-			type(character);
+	Keyboard(KeyboardBackend backend, KeystrokeTable keystrokes) {
+		this.backend = backend;
+		this.keystrokes = keystrokes;
+	}
+
+	/**
+	 * @return a backend injecting key events using the AWT Robot, with the delay which applications cope with. The
+	 * Robot is created once per JVM, since creating it is slow and a restarted reader can simply reuse it
+	 */
+	@SneakyThrows
+	static synchronized KeyboardBackend robotBackend() {
+		if (robot == null) {
+			robot = new RobotBackend(AUTO_DELAY_MS);
 		}
+		return robot;
 	}
 
 	/**
-	 * Types the single characters
+	 * @param uinput true to inject key events through a virtual keyboard of the Linux kernel, if it is accessible
+	 * @return a backend injecting key events, which uses the AWT Robot if uinput is not wanted or not accessible
+	 */
+	static KeyboardBackend backend(boolean uinput) {
+		if (uinput) {
+			try {
+				return uinputBackend();
+			}
+			catch (IOException e) {
+				System.err.println("Unable to use uinput, using a Robot instead: " + e.getMessage());
+			}
+		}
+		return robotBackend();
+	}
+
+	/**
+	 * The virtual keyboard is created once per JVM and never destroyed, since the display server takes a while to pick
+	 * up a new device and misses the first keys typed on it. The kernel destroys it when the process exits
 	 *
-	 * @param character the character to type
+	 * @return a backend typing on the virtual keyboard, whose close() leaves the keyboard alone
+	 * @throws IOException if uinput is not available, or not accessible
 	 */
-	private void type(char character) {
-		switch (character) {
-			case 'a':
-				doType(KeyEvent.VK_A);
-				break;
-			case 'b':
-				doType(KeyEvent.VK_B);
-				break;
-			case 'c':
-				doType(KeyEvent.VK_C);
-				break;
-			case 'd':
-				doType(KeyEvent.VK_D);
-				break;
-			case 'e':
-				doType(KeyEvent.VK_E);
-				break;
-			case 'f':
-				doType(KeyEvent.VK_F);
-				break;
-			case 'g':
-				doType(KeyEvent.VK_G);
-				break;
-			case 'h':
-				doType(KeyEvent.VK_H);
-				break;
-			case 'i':
-				doType(KeyEvent.VK_I);
-				break;
-			case 'j':
-				doType(KeyEvent.VK_J);
-				break;
-			case 'k':
-				doType(KeyEvent.VK_K);
-				break;
-			case 'l':
-				doType(KeyEvent.VK_L);
-				break;
-			case 'm':
-				doType(KeyEvent.VK_M);
-				break;
-			case 'n':
-				doType(KeyEvent.VK_N);
-				break;
-			case 'o':
-				doType(KeyEvent.VK_O);
-				break;
-			case 'p':
-				doType(KeyEvent.VK_P);
-				break;
-			case 'q':
-				doType(KeyEvent.VK_Q);
-				break;
-			case 'r':
-				doType(KeyEvent.VK_R);
-				break;
-			case 's':
-				doType(KeyEvent.VK_S);
-				break;
-			case 't':
-				doType(KeyEvent.VK_T);
-				break;
-			case 'u':
-				doType(KeyEvent.VK_U);
-				break;
-			case 'v':
-				doType(KeyEvent.VK_V);
-				break;
-			case 'w':
-				doType(KeyEvent.VK_W);
-				break;
-			case 'x':
-				doType(KeyEvent.VK_X);
-				break;
-			case 'y':
-				doType(KeyEvent.VK_Y);
-				break;
-			case 'z':
-				doType(KeyEvent.VK_Z);
-				break;
-			case 'A':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_A);
-				break;
-			case 'B':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_B);
-				break;
-			case 'C':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_C);
-				break;
-			case 'D':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_D);
-				break;
-			case 'E':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_E);
-				break;
-			case 'F':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_F);
-				break;
-			case 'G':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_G);
-				break;
-			case 'H':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_H);
-				break;
-			case 'I':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_I);
-				break;
-			case 'J':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_J);
-				break;
-			case 'K':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_K);
-				break;
-			case 'L':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_L);
-				break;
-			case 'M':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_M);
-				break;
-			case 'N':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_N);
-				break;
-			case 'O':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_O);
-				break;
-			case 'P':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_P);
-				break;
-			case 'Q':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_Q);
-				break;
-			case 'R':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_R);
-				break;
-			case 'S':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_S);
-				break;
-			case 'T':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_T);
-				break;
-			case 'U':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_U);
-				break;
-			case 'V':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_V);
-				break;
-			case 'W':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_W);
-				break;
-			case 'X':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_X);
-				break;
-			case 'Y':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_Y);
-				break;
-			case 'Z':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_Z);
-				break;
-			case '`':
-				doType(KeyEvent.VK_BACK_QUOTE);
-				break;
-			case '0':
-				doType(KeyEvent.VK_0);
-				break;
-			case '1':
-				doType(KeyEvent.VK_1);
-				break;
-			case '2':
-				doType(KeyEvent.VK_2);
-				break;
-			case '3':
-				doType(KeyEvent.VK_3);
-				break;
-			case '4':
-				doType(KeyEvent.VK_4);
-				break;
-			case '5':
-				doType(KeyEvent.VK_5);
-				break;
-			case '6':
-				doType(KeyEvent.VK_6);
-				break;
-			case '7':
-				doType(KeyEvent.VK_7);
-				break;
-			case '8':
-				doType(KeyEvent.VK_8);
-				break;
-			case '9':
-				doType(KeyEvent.VK_9);
-				break;
-			case '-':
-				doType(KeyEvent.VK_MINUS);
-				break;
-			case '=':
-				doType(KeyEvent.VK_EQUALS);
-				break;
-			case '~':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_BACK_QUOTE);
-				break;
-			case '!':
-				doType(KeyEvent.VK_EXCLAMATION_MARK);
-				break;
-			case '@':
-				doType(KeyEvent.VK_AT);
-				break;
-			case '#':
-				doType(KeyEvent.VK_NUMBER_SIGN);
-				break;
-			case '$':
-				doType(KeyEvent.VK_DOLLAR);
-				break;
-			case '%':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_5);
-				break;
-			case '^':
-				doType(KeyEvent.VK_CIRCUMFLEX);
-				break;
-			case '&':
-				doType(KeyEvent.VK_AMPERSAND);
-				break;
-			case '*':
-				doType(KeyEvent.VK_ASTERISK);
-				break;
-			case '(':
-				doType(KeyEvent.VK_LEFT_PARENTHESIS);
-				break;
-			case ')':
-				doType(KeyEvent.VK_RIGHT_PARENTHESIS);
-				break;
-			case '_':
-				doType(KeyEvent.VK_UNDERSCORE);
-				break;
-			case '+':
-				doType(KeyEvent.VK_PLUS);
-				break;
-			case '\t':
-				doType(KeyEvent.VK_TAB);
-				break;
-			case '\n':
-				doType(KeyEvent.VK_ENTER);
-				break;
-			case '[':
-				doType(KeyEvent.VK_OPEN_BRACKET);
-				break;
-			case ']':
-				doType(KeyEvent.VK_CLOSE_BRACKET);
-				break;
-			case '\\':
-				doType(KeyEvent.VK_BACK_SLASH);
-				break;
-			case '{':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_OPEN_BRACKET);
-				break;
-			case '}':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_CLOSE_BRACKET);
-				break;
-			case '|':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_BACK_SLASH);
-				break;
-			case ';':
-				doType(KeyEvent.VK_SEMICOLON);
-				break;
-			case ':':
-				doType(KeyEvent.VK_COLON);
-				break;
-			case '\'':
-				doType(KeyEvent.VK_QUOTE);
-				break;
-			case '"':
-				doType(KeyEvent.VK_QUOTEDBL);
-				break;
-			case ',':
-				doType(KeyEvent.VK_COMMA);
-				break;
-			case '<':
-				doType(KeyEvent.VK_LESS);
-				break;
-			case '.':
-				doType(KeyEvent.VK_PERIOD);
-				break;
-			case '>':
-				doType(KeyEvent.VK_GREATER);
-				break;
-			case '/':
-				doType(KeyEvent.VK_SLASH);
-				break;
-			case '?':
-				doType(KeyEvent.VK_SHIFT, KeyEvent.VK_SLASH);
-				break;
-			case ' ':
-				doType(KeyEvent.VK_SPACE);
-				break;
-			default:
-				System.err.println("Invalid char detected: " + character);
+	private static synchronized KeyboardBackend uinputBackend() throws IOException {
+		if (uinput == null) {
+			uinput = new UinputBackend();
 		}
+		return uinput::send;
+	}
+
+	/**
+	 * Stop typing, and release the backend
+	 */
+	public synchronized void close() {
+		backend.close();
 	}
 
 	/**
-	 * Does the actual typing
+	 * Takes a sequence of characters and types them in a single batch
 	 *
-	 * @param keyCodes the keycode(s) to emulate
+	 * @param characters the characters to type
 	 */
-	private void doType(int... keyCodes) {
-		doType(keyCodes, 0, keyCodes.length);
+	public synchronized void type(CharSequence characters) {
+		int length = compile(characters);
+		backend.send(events, length);
 	}
 
 	/**
-	 * Types an Array of keycodes with a offset and maximal length
+	 * Types a uid, followed by a newline. The compiled key events of recently typed uids are cached
 	 *
-	 * @param keyCodes the keycodes to type
-	 * @param offset   the pointer to start from
-	 * @param length   the maximum length of the string
+	 * @param uid the uid to type
 	 */
-	private void doType(int[] keyCodes, int offset, int length) {
-		if (length == 0) {
-			return;
+	public synchronized void typeLine(Uid uid) {
+		int[] compiled = compiledUids.get(uid);
+		if (compiled == null) {
+			StringBuilder line = new StringBuilder(uid.hexLength() + 1);
+			uid.appendHex(line);
+			line.append('\n');
+			compiled = Arrays.copyOf(events, compile(line));
+			compiledUids.put(uid, compiled);
 		}
+		backend.send(compiled, compiled.length);
+	}
 
-		robot.keyPress(keyCodes[offset]);
-		doType(keyCodes, offset + 1, length - 1);
-		robot.keyRelease(keyCodes[offset]);
-		robot.waitForIdle();
+	/**
+	 * Compile the characters into the (reused) events array
+	 *
+	 * @param characters the characters to compile
+	 * @return the amount of events
+	 */
+	private int compile(CharSequence characters) {
+		int maxLength = characters.length() * keystrokes.maxEventsPerCharacter();
+		if (events.length < maxLength) {
+			events = new int[maxLength];
+		}
+		int length = 0;
+		for (int i = 0; i < characters.length(); i++) {
+			char character = characters.charAt(i);
+			int next = keystrokes.compile(character, events, length);
+			if (next < 0) {
+				System.err.println("Invalid char detected: " + character);
+				continue;
+			}
+			length = next;
+		}
+		return length;
 	}
 }
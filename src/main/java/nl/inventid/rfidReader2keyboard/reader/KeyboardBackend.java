@@ -0,0 +1,21 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * Something which can inject key events, as if they were typed on a keyboard
+ */
+interface KeyboardBackend {
+
+	/**
+	 * Inject a batch of key events in order, and wait until they are processed
+	 *
+	 * @param events the events, a positive key code is a key press, a negative one a key release
+	 * @param length the amount of events to inject
+	 */
+	void send(int[] events, int length);
+
+	/**
+	 * Release whatever the backend holds on to. The backend is not used anymore afterwards
+	 */
+	default void close() {
+	}
+}
@@ -0,0 +1,24 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * Types the uid of each scan, followed by a newline
+ */
+class KeyboardSink implements ScanSink {
+
+	private final Keyboard keyboard;
+
+	KeyboardSink(Keyboard keyboard) {
+		this.keyboard = keyboard;
+	}
+
+	@Override
+	public boolean emit(ScanEvent event) {
+		keyboard.typeLine(event.getUid());
+		return true;
+	}
+
+	@Override
+	public void close() {
+		keyboard.close();
+	}
+}
@@ -0,0 +1,102 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * The keystrokes needed to type each character on a keyboard layout. The table is built once, so typing a character is
+ * a simple array lookup. Keystrokes are compiled into events: a positive key code is a key press, a negative one a key
+ * release.
+ */
+final class KeystrokeTable {
+
+	/**
+	 * The (US) layout this program has always typed with
+	 */
+	static final KeystrokeTable US = us();
+
+	private static final int TABLE_SIZE = 128;
+
+	private final int[][] keystrokes = new int[TABLE_SIZE][];
+
+	private KeystrokeTable() {
+	}
+
+	/**
+	 * Compile the keystrokes of a character into key events. Keys are pressed in order and released in reverse order
+	 *
+	 * @param character the character to compile
+	 * @param events    the array to write the events to, which must have room for maxEventsPerCharacter() events
+	 * @param offset    the index to start writing at
+	 * @return the index after the last written event, or -1 if the character cannot be typed on this layout
+	 */
+	int compile(char character, int[] events, int offset) {
+		int[] keyCodes = character < TABLE_SIZE ? keystrokes[character] : null;
+		if (keyCodes == null) {
+			return -1;
+		}
+		for (int i = 0; i < keyCodes.length; i++) {
+			events[offset + i] = keyCodes[i];
+			events[offset + 2 * keyCodes.length - 1 - i] = -keyCodes[i];
+		}
+		return offset + 2 * keyCodes.length;
+	}
+
+	/**
+	 * @return the maximum amount of events a single character compiles into
+	 */
+	int maxEventsPerCharacter() {
+		return 4;
+	}
+
+	private KeystrokeTable map(char character, int... keyCodes) {
+		keystrokes[character] = keyCodes;
+		return this;
+	}
+
+	private static KeystrokeTable us() {
+		KeystrokeTable table = new KeystrokeTable();
+		for (char c = 'a'; c <= 'z'; c++) {
+			table.map(c, KeyEvent.VK_A + (c - 'a'));
+			table.map(Character.toUpperCase(c), KeyEvent.VK_SHIFT, KeyEvent.VK_A + (c - 'a'));
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			table.map(c, KeyEvent.VK_0 + (c - '0'));
+		}
+		return table
+				.map('`', KeyEvent.VK_BACK_QUOTE)
+				.map('-', KeyEvent.VK_MINUS)
+				.map('=', KeyEvent.VK_EQUALS)
+				.map('~', KeyEvent.VK_SHIFT, KeyEvent.VK_BACK_QUOTE)
+				.map('!', KeyEvent.VK_EXCLAMATION_MARK)
+				.map('@', KeyEvent.VK_AT)
+				.map('#', KeyEvent.VK_NUMBER_SIGN)
+				.map('$', KeyEvent.VK_DOLLAR)
+				.map('%', KeyEvent.VK_SHIFT, KeyEvent.VK_5)
+				.map('^', KeyEvent.VK_CIRCUMFLEX)
+				.map('&', KeyEvent.VK_AMPERSAND)
+				.map('*', KeyEvent.VK_ASTERISK)
+				.map('(', KeyEvent.VK_LEFT_PARENTHESIS)
+				.map(')', KeyEvent.VK_RIGHT_PARENTHESIS)
+				.map('_', KeyEvent.VK_UNDERSCORE)
+				.map('+', KeyEvent.VK_PLUS)
+				.map('\t', KeyEvent.VK_TAB)
+				.map('\n', KeyEvent.VK_ENTER)
+				.map('[', KeyEvent.VK_OPEN_BRACKET)
+				.map(']', KeyEvent.VK_CLOSE_BRACKET)
+				.map('\\', KeyEvent.VK_BACK_SLASH)
+				.map('{', KeyEvent.VK_SHIFT, KeyEvent.VK_OPEN_BRACKET)
+				.map('}', KeyEvent.VK_SHIFT, KeyEvent.VK_CLOSE_BRACKET)
+				.map('|', KeyEvent.VK_SHIFT, KeyEvent.VK_BACK_SLASH)
+				.map(';', KeyEvent.VK_SEMICOLON)
+				.map(':', KeyEvent.VK_COLON)
+				.map('\'', KeyEvent.VK_QUOTE)
+				.map('"', KeyEvent.VK_QUOTEDBL)
+				.map(',', KeyEvent.VK_COMMA)
+				.map('<', KeyEvent.VK_LESS)
+				.map('.', KeyEvent.VK_PERIOD)
+				.map('>', KeyEvent.VK_GREATER)
+				.map('/', KeyEvent.VK_SLASH)
+				.map('?', KeyEvent.VK_SHIFT, KeyEvent.VK_SLASH)
+				.map(' ', KeyEvent.VK_SPACE);
+	}
+}
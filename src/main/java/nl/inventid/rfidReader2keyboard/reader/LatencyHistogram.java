@@ -0,0 +1,127 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, thread safe histogram of latencies in microseconds. Values are counted in log-linear buckets: every
+ * power of two is split into 16 buckets, so any percentile is accurate to within ~6%, in a few KB of memory and
+ * without allocating anything when recording.
+ */
+class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * @param nanos the latency to record, in nanoseconds
+	 */
+	void record(long nanos) {
+		counts.incrementAndGet(bucketOf(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos))));
+	}
+
+	/**
+	 * Record the time since a start time
+	 *
+	 * @param startNanos the System.nanoTime() at the start
+	 */
+	void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @param reset whether to reset the histogram, so the next snapshot only covers the values recorded after this one
+	 * @return the percentiles of the recorded values
+	 */
+	LatencySnapshot snapshot(boolean reset) {
+		long[] copy = newCounts();
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = reset ? counts.getAndSet(i, 0) : counts.get(i);
+		}
+		return snapshotOf(copy);
+	}
+
+	/**
+	 * Forget all recorded values
+	 */
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	/**
+	 * Add the counts of this histogram to those of other histograms, e.g. to take a snapshot of them together
+	 *
+	 * @param sums the counts per bucket, as created by newCounts()
+	 */
+	void addTo(long[] sums) {
+		for (int i = 0; i < BUCKETS; i++) {
+			sums[i] += counts.get(i);
+		}
+	}
+
+	/**
+	 * @return empty counts per bucket, to add histograms to
+	 */
+	static long[] newCounts() {
+		return new long[BUCKETS];
+	}
+
+	/**
+	 * @param counts the counts per bucket
+	 * @return the percentiles of the counted values
+	 */
+	static LatencySnapshot snapshotOf(long[] counts) {
+		long total = 0;
+		int highest = -1;
+		for (int i = 0; i < BUCKETS; i++) {
+			total += counts[i];
+			if (counts[i] > 0) {
+				highest = i;
+			}
+		}
+		if (total == 0) {
+			return LatencySnapshot.EMPTY;
+		}
+		return new LatencySnapshot(total, percentile(counts, total, 0.50), percentile(counts, total, 0.99),
+				percentile(counts, total, 0.999), upperBoundOf(highest));
+	}
+
+	private static long percentile(long[] counts, long total, double percentile) {
+		long rank = (long) Math.ceil(total * percentile);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return upperBoundOf(i);
+			}
+		}
+		return upperBoundOf(counts.length - 1);
+	}
+
+	static int bucketOf(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * @return the highest value (in microseconds) which is counted in the bucket
+	 */
+	static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
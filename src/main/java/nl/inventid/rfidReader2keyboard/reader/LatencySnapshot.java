@@ -0,0 +1,35 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The percentiles of the latencies recorded in a histogram, in microseconds
+ */
+@Getter
+@ToString
+public final class LatencySnapshot {
+
+	static final LatencySnapshot EMPTY = new LatencySnapshot(0, 0, 0, 0, 0);
+
+	private final long count;
+	private final long p50;
+	private final long p99;
+	private final long p999;
+	private final long max;
+
+	LatencySnapshot(long count, long p50, long p99, long p999, long max) {
+		this.count = count;
+		this.p50 = p50;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+
+	/**
+	 * @return a compact description, e.g. for a log line
+	 */
+	public String toCompactString() {
+		return "n=" + count + " p50=" + p50 + "us p99=" + p99 + "us p999=" + p999 + "us max=" + max + "us";
+	}
+}
@@ -0,0 +1,26 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Outputs each scan as a line of text: the uid, the name of the terminal and the time of the scan (ISO-8601),
+ * separated by tabs. This is easy to consume by other software, without emulating a keyboard.
+ */
+abstract class LineSink implements ScanSink {
+
+	private final StringBuilder line = new StringBuilder(128);
+
+	@Override
+	public boolean emit(ScanEvent event) {
+		line.setLength(0);
+		event.getUid().appendHex(line);
+		line.append('\t').append(event.getTerminalName()).append('\t').append(event.getTimestamp()).append('\n');
+		return write(line.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param line a line, including the newline, in UTF-8
+	 * @return true if the line was written (or queued to be written), false if it was dropped
+	 */
+	protected abstract boolean write(byte[] line);
+}
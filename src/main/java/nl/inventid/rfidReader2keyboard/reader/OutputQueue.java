@@ -0,0 +1,179 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue of scans which are output, in order, by a thread of its own. This way the read pipelines return to
+ * reading as soon as a scan is queued, and never wait for the (slow) typing of a previous scan.
+ */
+class OutputQueue {
+
+	private final ArrayDeque<ScanEvent> queue;
+	private final int capacity;
+	private final BackpressurePolicy policy;
+	private final Consumer<ScanEvent> output;
+	private final Consumer<ScanEvent> onDrop;
+	// Dropped scans, handed to onDrop on the thread of the queue
+	private final ArrayDeque<ScanEvent> droppedEvents;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final Thread consumer;
+
+	private volatile boolean running = true;
+
+	/**
+	 * @param capacity the maximum amount of scans waiting to be output
+	 * @param policy   what to do with a scan when the queue is full
+	 * @param output   what to do with each scan, called on the thread of the queue
+	 * @param onDrop   what to do with each dropped scan, called on the thread of the queue
+	 */
+	OutputQueue(int capacity, BackpressurePolicy policy, Consumer<ScanEvent> output, Consumer<ScanEvent> onDrop) {
+		this.queue = new ArrayDeque<>(capacity);
+		this.droppedEvents = new ArrayDeque<>(capacity);
+		this.capacity = capacity;
+		this.policy = policy;
+		this.output = output;
+		this.onDrop = onDrop;
+		this.consumer = new Thread(this::consume, "rfid-output");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * Queue a scan to be output
+	 *
+	 * @param event the scan
+	 * @return true if the scan was queued, false if it was coalesced with a waiting scan
+	 * @throws InterruptedException if interrupted while waiting for room in the queue
+	 */
+	boolean offer(ScanEvent event) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			if (policy == BackpressurePolicy.COALESCE && queue.stream().anyMatch(event::isSameScanAs)) {
+				coalesced.incrementAndGet();
+				return false;
+			}
+			while (queue.size() >= capacity) {
+				if (policy == BackpressurePolicy.DROP_OLDEST) {
+					ScanEvent oldest = queue.poll();
+					System.err.println("Output queue is full, dropping " + oldest);
+					dropped.incrementAndGet();
+					if (droppedEvents.size() == capacity) {
+						// The thread of the queue is stuck, there is no point in remembering more
+						droppedEvents.poll();
+					}
+					droppedEvents.add(oldest);
+				}
+				else {
+					notFull.await();
+				}
+			}
+			queue.add(event);
+			notEmpty.signal();
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stop outputting. Scans which are still waiting are discarded
+	 */
+	void shutdown() {
+		running = false;
+		consumer.interrupt();
+	}
+
+	/**
+	 * @return the amount of scans waiting to be output
+	 */
+	int size() {
+		lock.lock();
+		try {
+			return queue.size();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the amount of scans dropped because the queue was full
+	 */
+	long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return the amount of scans which were coalesced with a waiting scan of the same card
+	 */
+	long getCoalesced() {
+		return coalesced.get();
+	}
+
+	private ScanEvent take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (queue.isEmpty()) {
+				notEmpty.await();
+			}
+			ScanEvent event = queue.poll();
+			notFull.signal();
+			return event;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private List<ScanEvent> takeDropped() {
+		lock.lock();
+		try {
+			if (droppedEvents.isEmpty()) {
+				return Collections.emptyList();
+			}
+			List<ScanEvent> events = new ArrayList<>(droppedEvents);
+			droppedEvents.clear();
+			return events;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void consume() {
+		while (running) {
+			takeDropped().forEach(event -> handle(onDrop, event));
+			ScanEvent event;
+			try {
+				event = take();
+			}
+			catch (InterruptedException e) {
+				continue;
+			}
+			handle(output, event);
+		}
+	}
+
+	private void handle(Consumer<ScanEvent> handler, ScanEvent event) {
+		try {
+			handler.accept(event);
+		}
+		catch (RuntimeException e) {
+			// Never let a single failing output stop all output
+			System.err.println("Could not output " + event);
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes each scan as a line to a named pipe, e.g. one created with mkfifo. Opening a pipe waits until the other side
+ * opens it, and writing waits while the other side does not read, so the pipe is (re)opened and written by a thread of
+ * its own. Scans are dropped while nobody reads the pipe, like a keyboard typing into a window which is not there, and
+ * when the other side falls too far behind. A regular file is simply appended to.
+ */
+class PipeSink extends LineSink {
+
+	private static final long REOPEN_DELAY_IN_MS = 1000;
+	// The amount of scans the other side may fall behind before scans are dropped
+	private static final int BUFFER = 256;
+
+	private final Path path;
+	private final BlockingQueue<byte[]> lines = new ArrayBlockingQueue<>(BUFFER);
+	private final Thread writer;
+
+	private volatile boolean connected;
+	private volatile boolean closed;
+	// Whether the writer is waiting for the other side to open the pipe
+	private boolean opening;
+
+	/**
+	 * @param path the named pipe
+	 */
+	PipeSink(Path path) {
+		this.path = path;
+		this.writer = new Thread(this::keepWriting, "scan-sink-pipe");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	protected boolean write(byte[] line) {
+		if (!connected) {
+			System.err.println("Nobody reads " + path + ", dropping a scan");
+			return false;
+		}
+		if (!lines.offer(line)) {
+			System.err.println("The reader of " + path + " does not keep up, dropping a scan");
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void close() {
+		boolean blockedInOpen;
+		synchronized (this) {
+			closed = true;
+			blockedInOpen = opening;
+		}
+		// Closes the channel, when it is stuck writing
+		writer.interrupt();
+		if (blockedInOpen) {
+			// Opening a pipe cannot be interrupted, but it returns once the other side opens it. Should the writer
+			// return before that, opening the other side waits for the next writer, so do not wait for it here
+			Thread unblock = new Thread(this::openOtherSide, "scan-sink-pipe-close");
+			unblock.setDaemon(true);
+			unblock.start();
+		}
+	}
+
+	private void keepWriting() {
+		while (!closed) {
+			FileChannel channel;
+			try {
+				synchronized (this) {
+					if (closed) {
+						return;
+					}
+					opening = true;
+				}
+				try {
+					// Waits until the other side opens the pipe
+					channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+							StandardOpenOption.APPEND);
+				}
+				finally {
+					synchronized (this) {
+						opening = false;
+					}
+				}
+			}
+			catch (IOException e) {
+				System.err.println("Could not open " + path + ": " + e.getMessage());
+				sleep();
+				continue;
+			}
+			writeLines(channel);
+		}
+	}
+
+	private void writeLines(FileChannel channel) {
+		try (FileChannel open = channel) {
+			connected = true;
+			System.out.println("Writing scans to " + path);
+			while (!closed) {
+				ByteBuffer line = ByteBuffer.wrap(lines.take());
+				while (line.hasRemaining()) {
+					open.write(line);
+				}
+			}
+		}
+		catch (IOException e) {
+			if (!closed) {
+				System.out.println("The reader of " + path + " went away");
+			}
+		}
+		catch (InterruptedException e) {
+			// Closed
+		}
+		connected = false;
+		lines.clear();
+	}
+
+	private void openOtherSide() {
+		try (FileInputStream ignored = new FileInputStream(path.toFile())) {
+			// Only opened to let the writer return from opening
+		}
+		catch (IOException e) {
+			// Then the writer is not waiting for it either
+		}
+	}
+
+	private void sleep() {
+		try {
+			TimeUnit.MILLISECONDS.sleep(REOPEN_DELAY_IN_MS);
+		}
+		catch (InterruptedException e) {
+			closed = true;
+		}
+	}
+}
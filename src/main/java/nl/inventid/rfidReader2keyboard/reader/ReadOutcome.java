@@ -0,0 +1,43 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * The possible outcomes of an attempt to read the uid of a card
+ */
+public enum ReadOutcome {
+	/**
+	 * The uid of a card was read
+	 */
+	CARD,
+	/**
+	 * There is no card on the terminal (the steady state of an idle terminal)
+	 */
+	NO_CARD,
+	/**
+	 * The card was removed (or reset) while talking to it
+	 */
+	REMOVED,
+	/**
+	 * The terminal itself is gone, or the PC/SC service is not available
+	 */
+	READER_UNAVAILABLE,
+	/**
+	 * The communication with the card failed
+	 */
+	TRANSACTION_FAILED,
+	/**
+	 * The card did not respond in time
+	 */
+	TIMEOUT,
+	/**
+	 * The card responded with an unsuccessful status word
+	 */
+	READ_FAILURE,
+	/**
+	 * The card responded with an empty uid
+	 */
+	EMPTY_CODE,
+	/**
+	 * Anything we do not know how to handle
+	 */
+	UNKNOWN_ERROR,
+}
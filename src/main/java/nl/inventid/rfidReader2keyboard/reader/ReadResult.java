@@ -0,0 +1,57 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import lombok.Getter;
+
+/**
+ * The result of an attempt to read the uid of a card. Results without a uid are shared instances, so the steady
+ * "no card" state does not allocate anything.
+ */
+@Getter
+class ReadResult {
+
+	static final ReadResult NO_CARD = new ReadResult(ReadOutcome.NO_CARD, null, Errors.SCARD_E_NO_SMARTCARD);
+	static final ReadResult REMOVED = new ReadResult(ReadOutcome.REMOVED, null, Errors.SCARD_W_REMOVED_CARD);
+	static final ReadResult TIMEOUT = new ReadResult(ReadOutcome.TIMEOUT, null, Errors.SCARD_E_TIMEOUT);
+	static final ReadResult READ_FAILURE = new ReadResult(ReadOutcome.READ_FAILURE, null, Errors.SCARD_S_SUCCESS);
+	static final ReadResult EMPTY_CODE = new ReadResult(ReadOutcome.EMPTY_CODE, null, Errors.SCARD_S_SUCCESS);
+
+	private final ReadOutcome outcome;
+	private final Uid uid;
+	private final int code;
+
+	private ReadResult(ReadOutcome outcome, Uid uid, int code) {
+		this.outcome = outcome;
+		this.uid = uid;
+		this.code = code;
+	}
+
+	/**
+	 * @param uid the uid which was read
+	 * @return a successful result
+	 */
+	static ReadResult card(Uid uid) {
+		return new ReadResult(ReadOutcome.CARD, uid, Errors.SCARD_S_SUCCESS);
+	}
+
+	/**
+	 * @param code the PC/SC result code of the failed call
+	 * @return the result matching the code, a shared instance for all common codes
+	 */
+	static ReadResult failure(int code) {
+		switch (code) {
+			case Errors.SCARD_E_NO_SMARTCARD:
+				return NO_CARD;
+			case Errors.SCARD_W_REMOVED_CARD:
+				return REMOVED;
+			case Errors.SCARD_E_TIMEOUT:
+				return TIMEOUT;
+			default:
+				return new ReadResult(Errors.classify(code), null, code);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return outcome == ReadOutcome.CARD ? uid.toString() : outcome + " (" + Errors.name(code) + ")";
+	}
+}
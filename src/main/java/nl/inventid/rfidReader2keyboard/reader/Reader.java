@@ -1,92 +1,75 @@
 package nl.inventid.rfidReader2keyboard.reader;
 
-import javax.smartcardio.Card;
-import javax.smartcardio.CardChannel;
-import javax.smartcardio.CardException;
-import javax.smartcardio.CardNotPresentException;
 import javax.smartcardio.CardTerminal;
-import javax.smartcardio.CommandAPDU;
-import javax.smartcardio.ResponseAPDU;
 import javax.smartcardio.TerminalFactory;
 
+import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.FutureTask;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
-import com.google.common.collect.Lists;
-import com.google.common.primitives.Bytes;
+import com.google.common.base.Throwables;
 import jnasmartcardio.Smartcardio;
-import lombok.Getter;
-import lombok.Setter;
 import nl.inventid.rfidReader2keyboard.SystemStatus;
-import org.apache.commons.codec.binary.Hex;
 
 /**
  * This little program handles the reading of the RFID miFare chips. An exit code of 0 means everything went well. An
  * exit code of 1 means no suitable terminal was found. An exit code of 2 means no type robot could be started.
+ * Each terminal which is used is read by its own {@link TerminalPipeline}.
  */
 public class Reader {
 
-	private static final int DEBOUNCE_IN_MS = 1250;
+	private static final int UID_LIST_CHECK_IN_SECONDS = 5;
+
+	private static TerminalFactory pcscFactory;
 
 	private final List<String> TERMINAL_PREFERENCES = new ArrayList<>();
-	private final Map<String, Integer> errorMap = new HashMap<>();
-	private final ScheduledThreadPoolExecutor executorService = new ScheduledThreadPoolExecutor(5);
-	private final TerminalDetector detectorLoop = new TerminalDetector();
+	private final ScheduledThreadPoolExecutor executorService = new ScheduledThreadPoolExecutor(2);
 	private final ErrorLogger errorLogger = new ErrorLogger();
-	private final Object[] synchronizer = new Object[0];
-	private final Keyboard keyboard = new Keyboard();
-	private final Reconnector reconnector = new Reconnector(this, 2); // Reconnect every two seconds
+	private final Map<SinkType, ScanSink> sinks = new EnumMap<>(SinkType.class);
+	private final Map<String, ScanSink> sinksByTerminal = new ConcurrentHashMap<>();
+	private final List<TerminalPipeline> pipelines = new ArrayList<>();
+	private final Map<String, ScanMetrics> metrics = new ConcurrentHashMap<>();
+	private final Map<String, EventCounters> counters = new ConcurrentHashMap<>();
 
 	private final SystemStatus systemStatus;
-	private final boolean shouldBuzz;
-
-	private String oldUid;
-	private CardTerminal terminal;
-	private int i;
-
-	@Getter
-	@Setter
-	private Instant lastAction = Instant.now();
-	private String usedCardTerminalName;
-
-	/**
-	 * Get the currently connected terminals
-	 *
-	 * @return the list of found terminals
-	 */
-	private static List<CardTerminal> listTerminals() {
-		// show the list of available terminals
-		try {
-			return TerminalFactory.getDefault().terminals().list();
-		}
-		catch (Throwable e) {
-			return Lists.newArrayList();
-		}
-	}
+	private final ReaderConfiguration configuration;
+	private final OutputQueue outputQueue;
+	private final TerminalContexts contexts;
+	private final TerminalInventory inventory;
+	private final Optional<TraceWriter> trace;
+	private final Optional<ScanJournal> journal;
+	private final Optional<UidFilter> uidFilter;
+	private final Optional<Simulation> simulation;
+	private final List<BiConsumer<ScanEvent, DeliveryStatus>> scanListeners = new CopyOnWriteArrayList<>();
 
 	/**
 	 * Creates a new instance of a Reader
 	 *
-	 * @param systemStatus the status to which to log the state of the reader instance
+	 * @param systemStatus  the status to which to log the state of the reader instance
+	 * @param configuration the settings to use for this reader
 	 * @throws NoSuchAlgorithmException
 	 */
-	public Reader(SystemStatus systemStatus, boolean shouldBuzz) throws NoSuchAlgorithmException {
+	public Reader(SystemStatus systemStatus, ReaderConfiguration configuration) throws NoSuchAlgorithmException {
 		this.systemStatus = systemStatus;
-		this.shouldBuzz = shouldBuzz;
+		this.configuration = configuration;
+		Simulation simulation = configuration.getReplay() != null ? configuration.getReplay().getSimulation()
+				: configuration.getSimulation();
+		this.simulation = Optional.ofNullable(simulation);
 
 		TERMINAL_PREFERENCES.add("ACS ACR122U PICC Interface"); // Best match
 		TERMINAL_PREFERENCES.add("ACR122"); // That'll do (Windows does not include the U)
@@ -94,11 +77,33 @@ public class Reader {
 
 		System.out.println("Starting rfid-reader2keyboard");
 
-		Security.insertProviderAt(new Smartcardio(), 1);
-		TerminalFactory.getInstance("PC/SC", null);
+		// These do not depend on each other (or on the terminals), so they start while the terminals are enumerated
+		CompletableFuture<Void> sinksOpened = CompletableFuture.runAsync(
+				() -> openSinks(simulation == null || simulation.isTyping()));
+		CompletableFuture<Optional<ScanJournal>> journalOpened = CompletableFuture.supplyAsync(this::openJournal);
+		CompletableFuture<Optional<UidFilter>> uidFilterOpened = CompletableFuture.supplyAsync(this::openUidFilter);
+
+		TerminalFactory factory;
+		if (simulation != null) {
+			System.out.println("Simulating terminals: " + simulation);
+			factory = TerminalFactory.getInstance(SimulatedProvider.TYPE, simulation, new SimulatedProvider());
+		}
+		else {
+			factory = pcscFactory();
+		}
+		trace = openTrace();
+		contexts = new TerminalContexts(factory, trace);
+		inventory = new TerminalInventory(contexts);
+
+		this.journal = await(journalOpened);
+		this.uidFilter = await(uidFilterOpened);
+		await(sinksOpened);
+		this.outputQueue = new OutputQueue(configuration.getOutputQueueCapacity(),
+				configuration.getBackpressurePolicy(), this::output,
+				event -> delivered(event, DeliveryStatus.DROPPED));
 
 		System.out.println("The following terminals were detected:");
-		System.out.println(Reader.listTerminals());
+		System.out.println(inventory.list());
 		systemStatus.setTerminalsDetected(true);
 
 		System.out.println();
@@ -108,17 +113,28 @@ public class Reader {
 						+ " the instructions of inventid support and send these lines to the given email address");
 
 		executorService.scheduleAtFixedRate(errorLogger, 10, 30, TimeUnit.SECONDS);
-		executorService.scheduleAtFixedRate(detectorLoop, 10, 15, TimeUnit.SECONDS);
+		executorService.scheduleAtFixedRate(() -> counters.values().forEach(EventCounters::tick),
+				EventCounters.TICK_IN_SECONDS, EventCounters.TICK_IN_SECONDS, TimeUnit.SECONDS);
+		uidFilter.ifPresent(filter -> executorService.scheduleWithFixedDelay(filter::reloadIfChanged,
+				UID_LIST_CHECK_IN_SECONDS, UID_LIST_CHECK_IN_SECONDS, TimeUnit.SECONDS));
 		systemStatus.setSchedulersStarted(true);
 
-		determineCardTerminalToUse();
+		determineCardTerminalsToUse().forEach(name -> {
+			systemStatus.setTerminalHealth(name, TerminalHealth.HEALTHY);
+			ScanMetrics terminalMetrics = new ScanMetrics();
+			EventCounters terminalCounters = new EventCounters();
+			metrics.put(name, terminalMetrics);
+			counters.put(name, terminalCounters);
+			pipelines.add(new TerminalPipeline(this, name, configuration, terminalMetrics, terminalCounters));
+		});
+		inventory.subscribe(new TerminalRouter());
+		inventory.start();
 	}
 
 	public void start() {
 		systemStatus.setReaderStarted(true);
-		findAndConnectToTerminal();
-		executorService.scheduleWithFixedDelay(this::run, 1000, 100, TimeUnit.MILLISECONDS);
-		executorService.scheduleWithFixedDelay(reconnector, 1, 1, TimeUnit.SECONDS);
+		pipelines.forEach(TerminalPipeline::start);
+		Optional.ofNullable(configuration.getReplay()).ifPresent(TraceReplayer::start);
 		systemStatus.setReaderRunning(true);
 		systemStatus.setRunning(true);
 	}
@@ -131,6 +147,16 @@ public class Reader {
 		systemStatus.setRunning(false);
 
 		executorService.shutdownNow();
+		inventory.shutdown();
+		pipelines.forEach(TerminalPipeline::stop);
+		pipelines.forEach(pipeline -> systemStatus.removeTerminalHealth(pipeline.getUsedCardTerminalName()));
+		contexts.close();
+		outputQueue.shutdown();
+		Optional.ofNullable(configuration.getReplay()).ifPresent(TraceReplayer::stop);
+		simulation.ifPresent(Simulation::stop);
+		trace.ifPresent(TraceWriter::close);
+		journal.ifPresent(ScanJournal::close);
+		sinks.values().forEach(ScanSink::close);
 		systemStatus.setReaderRunning(false);
 		systemStatus.setReaderStarted(false);
 		systemStatus.setSchedulersStarted(false);
@@ -140,59 +166,59 @@ public class Reader {
 	}
 
 	/**
-	 * Find and connect to a terminal, based on the preferences in TERMINAL_PREFERENCES
+	 * The PC/SC factory is created once per JVM, since registering the provider (and loading the native library)
+	 * once is enough, and a restarted reader should not pay for it again
 	 *
-	 * @return a valid CardTerminal or halts the system if no match can be found
+	 * @return the factory of the PC/SC terminals
+	 * @throws NoSuchAlgorithmException if there is no PC/SC provider
 	 */
-	private void determineCardTerminalToUse() {
+	private static synchronized TerminalFactory pcscFactory() throws NoSuchAlgorithmException {
+		if (pcscFactory == null) {
+			Security.insertProviderAt(new Smartcardio(), 1);
+			pcscFactory = TerminalFactory.getInstance("PC/SC", null);
+		}
+		return pcscFactory;
+	}
+
+	/**
+	 * Wait for a part of the startup which runs on another thread
+	 *
+	 * @return its result
+	 */
+	private static <T> T await(CompletableFuture<T> future) {
 		try {
-			synchronized (synchronizer) {
-				// show the list of available terminals
-				TerminalFactory factory = TerminalFactory.getDefault();
-				List<CardTerminal> terminals = factory.terminals().list();
-
-				System.out.println("There are " + TERMINAL_PREFERENCES.size() + " possible terminal matches");
-				System.out.println("There are " + terminals.size() + " terminals attached to this machine");
-
-				for (int j = 0; j < TERMINAL_PREFERENCES.size(); j++) {
-					String requiredTerminal = TERMINAL_PREFERENCES.get(j);
-					System.out.println("Trying to attach to '" + requiredTerminal + "'");
-					for (int i = 0; i < terminals.size(); i++) {
-						if (terminals.get(i).getName().contains(requiredTerminal)) {
-							usedCardTerminalName = terminals.get(i).getName();
-							systemStatus.setFoundReader(true);
-							return;
-						}
-					}
-				}
-			}
+			return future.join();
 		}
-		catch (Throwable e) {
-			// Probably no reader found...
-			System.err.println("Unable to connect to RFID reader");
-			e.printStackTrace();
+		catch (CompletionException e) {
+			// Throw what the part threw itself
+			Throwables.propagateIfPossible(e.getCause());
+			throw e;
 		}
-		return;
 	}
 
 	/**
-	 * Find and connect to a terminal, based on the preferences in TERMINAL_PREFERENCES
+	 * Find the terminals to use, based on the preferences in TERMINAL_PREFERENCES. Normally only the first match is
+	 * used. When all terminals should be used, every terminal matching the best preference is used.
 	 *
-	 * @return a valid CardTerminal or halts the system if no match can be found
+	 * @return the names of the terminals to use, which is empty if no match can be found
 	 */
-	private void findAndConnectToTerminal() {
+	private List<String> determineCardTerminalsToUse() {
 		try {
-			synchronized (synchronizer) {
-				// show the list of available terminals
-				TerminalFactory factory = TerminalFactory.getDefault();
-				List<CardTerminal> terminals = factory.terminals().list();
-
-				for (int i = 0; i < terminals.size(); i++) {
-					if (terminals.get(i).getName().equals(usedCardTerminalName)) {
-						System.out.println("Attached to '" + usedCardTerminalName + "'");
-						terminal = terminals.get(i);
-						return;
-					}
+			List<CardTerminal> terminals = inventory.list();
+
+			System.out.println("There are " + TERMINAL_PREFERENCES.size() + " possible terminal matches");
+			System.out.println("There are " + terminals.size() + " terminals attached to this machine");
+
+			for (int j = 0; j < TERMINAL_PREFERENCES.size(); j++) {
+				String requiredTerminal = TERMINAL_PREFERENCES.get(j);
+				System.out.println("Trying to attach to '" + requiredTerminal + "'");
+				List<String> matches = terminals.stream()
+						.map(CardTerminal::getName)
+						.filter(name -> name.contains(requiredTerminal))
+						.collect(Collectors.toList());
+				if (!matches.isEmpty()) {
+					systemStatus.setFoundReader(true);
+					return configuration.isMultiTerminal() ? matches : matches.subList(0, 1);
 				}
 			}
 		}
@@ -201,261 +227,383 @@ public class Reader {
 			System.err.println("Unable to connect to RFID reader");
 			e.printStackTrace();
 		}
-		return;
+		return new ArrayList<>();
 	}
 
 	/**
-	 * Do the actual work of the program by looping over it and writing/exceptioning In case you are looking at this
-	 * code and thinking "OMG why not just use the CardTerminal methods instead of catching?": There is a very good
-	 * reason: javax.smartcardio is buggy as fuck, so on some platform the `waitForCardPresent` and `waitForCardAbsent`
-	 * methods will not block, or block indefinitely under some conditions. Especially in combination with sleeping
-	 * code, this is a significant nightmare! Therefore we simply try to read from the card, and handle all exceptions.
-	 * In the exception handling, possibly we will reconnect to a terminal, if that is the best thing to do for
-	 * stability
+	 * @return the trace to record to, if recording
 	 */
-	private void run() {
-		if (terminal == null) {
-			System.err.println("No terminal connected!");
-			return;
+	private Optional<TraceWriter> openTrace() {
+		if (configuration.getTracePath() == null) {
+			return Optional.empty();
 		}
 		try {
-			synchronized (synchronizer) {
-				// Bulkhead feature, ensure we do not fire anything there on the main thread or executorservice so
-				// prevent those of becoming too busy
-				ExecutorService uglyExecutorHack = Executors.newSingleThreadExecutor();
-				Callable task = new CardUuidReader(terminal);
-				FutureTask<String> future = new FutureTask<>(task);
-				uglyExecutorHack.execute(future);
-				String uid;
-
-				// We'll give the card 150ms to respond, or we cancel the request.
-				try {
-					uid = future.get(150, TimeUnit.MILLISECONDS);
-				}
-				catch (TimeoutException e) {
-					future.cancel(true);
-					System.err.println("Did not get an card uid in time, cancelled");
-					return;
-				}
-				catch (ExecutionException e) {
-					throw e.getCause();
-				}
-				finally {
-					uglyExecutorHack.shutdownNow();
-				}
+			System.out.println("Recording a trace to " + configuration.getTracePath());
+			return Optional.of(new TraceWriter(configuration.getTracePath()));
+		}
+		catch (IOException e) {
+			System.err.println("Unable to record a trace to " + configuration.getTracePath());
+			e.printStackTrace();
+			return Optional.empty();
+		}
+	}
 
-				// We'll check if this is simply a re-read, if it is, we are not going to type this again
-				if (!isNewCard(uid, oldUid, lastAction)) {
-					return;
-				}
+	/**
+	 * @return the journal to record all output scans to, if any
+	 */
+	private Optional<ScanJournal> openJournal() {
+		if (configuration.getJournalDirectory() == null) {
+			return Optional.empty();
+		}
+		try {
+			ScanJournal scans = new ScanJournal(configuration.getJournalDirectory(),
+					configuration.getJournalSegments(), configuration.getJournalSegmentSizeInBytes());
+			System.out.println("Keeping a journal of the last " + scans.getCapacity() + " scans in "
+					+ configuration.getJournalDirectory());
+			return Optional.of(scans);
+		}
+		catch (JournalInUseException e) {
+			System.err.println(e.getMessage() + ", not keeping a journal");
+			return Optional.empty();
+		}
+		catch (IOException | RuntimeException e) {
+			// The journal is nice to have, but never a reason not to type
+			System.err.println("Unable to keep a journal in " + configuration.getJournalDirectory());
+			e.printStackTrace();
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Open the sinks which are used by any terminal. A sink which cannot be opened is replaced by the keyboard
+	 *
+	 * @param typing false to not actually type or paste (when simulating)
+	 */
+	private void openSinks(boolean typing) {
+		EnumSet<SinkType> used = EnumSet.of(configuration.getSink());
+		used.addAll(configuration.getTerminalSinks().values());
+		for (SinkType type : used) {
+			try {
+				sinks.put(type, openSink(type, typing));
+			}
+			catch (IOException | RuntimeException e) {
+				System.err.println("Unable to open the " + type + " sink, typing instead");
+				e.printStackTrace();
+			}
+		}
+		if (sinks.size() < used.size() && !sinks.containsKey(SinkType.KEYBOARD)) {
+			sinks.put(SinkType.KEYBOARD, keyboardSink(typing));
+		}
+	}
 
-				// Buzz! Separate thread to allow it to fail if the card is removed by now!
-				if ( this.shouldBuzz) {
-					new Thread(new SingleBuzz(terminal)).start();
+	private ScanSink openSink(SinkType type, boolean typing) throws IOException {
+		switch (type) {
+			case STDOUT:
+				return new StdoutSink();
+			case SOCKET:
+				return new SocketSink(configuration.getSinkPort());
+			case PIPE:
+				if (configuration.getSinkPipePath() == null) {
+					throw new IOException("No named pipe given");
+				}
+				return new PipeSink(configuration.getSinkPipePath());
+			case CLIPBOARD:
+				if (typing) {
+					return new ClipboardSink(Keyboard.backend(configuration.isUinput()));
 				}
+				// Do not paste when simulating
+				return keyboardSink(false);
+			default:
+				return keyboardSink(typing);
+		}
+	}
 
-				System.out.println("This is a new card! " + uid);
-				lastAction = Instant.now();
-				// Emulate a keyboard and "type" the uid, followed by a newline
-				keyboard.type(uid + "\n");
+	private ScanSink keyboardSink(boolean typing) {
+		return new KeyboardSink(new Keyboard(
+				typing ? Keyboard.backend(configuration.isUinput()) : (events, length) -> {}, KeystrokeTable.US));
+	}
 
-				i++;
-				oldUid = uid;
+	/**
+	 * @param terminalName the name of a terminal
+	 * @return the sink to send the scans of the terminal to
+	 */
+	private ScanSink sinkFor(String terminalName) {
+		return sinksByTerminal.computeIfAbsent(terminalName, name -> {
+			SinkType type = configuration.getTerminalSinks().entrySet().stream()
+					.filter(terminalSink -> name.contains(terminalSink.getKey()))
+					.map(Map.Entry::getValue)
+					.findFirst()
+					.orElse(configuration.getSink());
+			return sinks.getOrDefault(type, sinks.get(SinkType.KEYBOARD));
+		});
+	}
 
-				System.out.println("ready for next card");
-				System.out.println("Card scan run: " + i);
-			}
+	/**
+	 * @return the filter which checks cards against the uid list, if there is a list
+	 */
+	private Optional<UidFilter> openUidFilter() {
+		if (configuration.getUidListPath() == null) {
+			return Optional.empty();
 		}
-		catch (Exception e) {
-			// Something went wrong when scanning the card
-			if (e.getMessage().equals(Errors.FAILED_CARD_TRANSACTION) || e.getMessage()
-					.equals(Errors.READER_UNAVAILABLE)) {
-				logError(e.getMessage());
-				return;
-			}
-			// Card is not present while scanning
-			if (e.getMessage().equals(Errors.NO_CARD) || e instanceof CardNotPresentException || e.getMessage()
-					.equals(Errors.REMOVED_CARD)) {
-				logError(e.getMessage());
-				return;
-			}
-			// Could not reliably connect to the reader (this can mean there is simply no card)
-			if (e.getMessage().equals(Errors.NO_CONNECT) || e.getMessage().equals(Errors.CARD_READ_FAILURE)) {
-				logError(e.getMessage());
-				return;
-			}
-			if (e.getMessage().equals(Errors.EMPTY_CODE)) {
-				logError(e.getMessage());
-				System.err.println("Empty code was read");
-				return;
-			}
-			System.err.println("Help something uncaught happened! This should not happen!");
-			attemptRecovery(e);
+		try {
+			return Optional.of(new UidFilter(configuration.getUidListPath(), configuration.getUidListMode()));
 		}
-		catch (Throwable e) {
-			System.err.println("Throwable was thrown!");
-			attemptRecovery(e);
+		catch (IOException | RuntimeException e) {
+			// Typing everything is better than typing nothing, the backend still checks every ticket
+			System.err.println("Unable to load the uid list " + configuration.getUidListPath() + ", typing all cards");
+			e.printStackTrace();
+			return Optional.empty();
 		}
 	}
 
-	private void attemptRecovery(Throwable e) {
-		logError(e.getMessage());
-		e.printStackTrace();
-		System.out.println(e.getMessage());
-		findAndConnectToTerminal();
+	/**
+	 * @return the filter which checks cards against the uid list, if there is a list
+	 */
+	public Optional<UidFilter> getUidFilter() {
+		return uidFilter;
 	}
 
-
 	/**
-	 * @param newUid   the newly scanned UID
-	 * @param oldUid   the previously scanned code
-	 * @param lastScan the time of the last successful scan
-	 * @return Return true if the card is different OR if the previous card was scanned over 1 second before
+	 * @param uid the uid of a card
+	 * @return true if the card should be typed, according to the uid list (if any)
 	 */
-	private boolean isNewCard(String newUid, String oldUid, Instant lastScan) {
-		return !newUid.equals(oldUid) || lastScan == null ||
-				(lastScan != null && lastScan.plus(DEBOUNCE_IN_MS, ChronoUnit.MILLIS).isBefore(Instant.now()));
+	boolean accepts(Uid uid) {
+		return !uidFilter.isPresent() || uidFilter.get().accepts(uid);
 	}
 
 	/**
-	 * Log an error by incrementing the value in the map by one
-	 *
-	 * @param errorCause the cause of the error
+	 * @return the journal of all output scans, if it is kept
 	 */
-	private void logError(String errorCause) {
-		Integer newValue = errorMap.getOrDefault(errorCause, 0) + 1;
-		errorMap.put(errorCause, newValue);
+	public Optional<ScanJournal> getJournal() {
+		return journal;
 	}
 
 	/**
-	 * This is a very stupid innerclass, which simply prints the errorMap of the main class every 60 seconds
+	 * @param terminalName the name of a terminal
+	 * @return the index in TERMINAL_PREFERENCES of the best preference the terminal matches
 	 */
-	private class ErrorLogger implements Runnable {
-		public void run() {
-			System.out.println("Error map: " + errorMap.entrySet());
-			System.out.println("Executorpool runnables: " + executorService.getQueue());
+	private int preferenceOf(String terminalName) {
+		for (int j = 0; j < TERMINAL_PREFERENCES.size(); j++) {
+			if (terminalName.contains(TERMINAL_PREFERENCES.get(j))) {
+				return j;
+			}
 		}
+		return TERMINAL_PREFERENCES.size();
 	}
 
 	/**
-	 * This is a very stupid innerclass, which simply prints the connected readers every 30 seconds
+	 * @return the cached list of attached terminals
 	 */
-	private static class TerminalDetector implements Runnable {
-		public void run() {
-			System.out.println("Terminals: " + Reader.listTerminals());
-		}
+	TerminalInventory getInventory() {
+		return inventory;
 	}
 
 	/**
-	 * This inner class simply attempts to reconnect to a terminal in case there were no scan actions for a few seconds
-	 * The JVM may lose the connection under such circumstances :(
+	 * @return the PC/SC contexts through which the terminals are used
 	 */
-	private static class Reconnector implements Runnable {
+	TerminalContexts getContexts() {
+		return contexts;
+	}
 
-		private final Reader reader;
-		private final int reconnectTime;
+	/**
+	 * Get the latencies of each stage of a scan, per terminal. All values are in microseconds, and cover the lifetime
+	 * of this reader
+	 *
+	 * @return the latency snapshots of each stage, by terminal name
+	 */
+	public Map<String, Map<ScanStage, LatencySnapshot>> getLatencies() {
+		Map<String, Map<ScanStage, LatencySnapshot>> latencies = new TreeMap<>();
+		metrics.forEach((name, terminalMetrics) -> latencies.put(name, terminalMetrics.snapshot(false)));
+		return latencies;
+	}
 
-		public Reconnector(Reader reader, int reconnectTimeInSeconds) {
-			this.reader = reader;
-			this.reconnectTime = reconnectTimeInSeconds;
-			System.out.println("Reconnector started");
-		}
+	/**
+	 * Get the latencies of each stage of a scan in about the last minute, per terminal, in microseconds. Unlike
+	 * getLatencies(), these show when a terminal slows down
+	 *
+	 * @return the latency snapshots of each stage, by terminal name
+	 */
+	public Map<String, Map<ScanStage, LatencySnapshot>> getRecentLatencies() {
+		Map<String, Map<ScanStage, LatencySnapshot>> latencies = new TreeMap<>();
+		metrics.forEach((name, terminalMetrics) -> latencies.put(name, terminalMetrics.recentSnapshot()));
+		return latencies;
+	}
 
-		@Override
-		public void run() {
-			Instant now = Instant.now();
-			if (reader.getLastAction() == null ||
-					reader.getLastAction().plus(reconnectTime, ChronoUnit.SECONDS).isBefore(now)) {
-				System.out.println("Reconnect due to lack of scan actions");
-				reader.findAndConnectToTerminal();
-				reader.setLastAction(now);
-			}
-		}
+	/**
+	 * Report the health of a terminal in the system status
+	 *
+	 * @param terminalName the name of the terminal
+	 * @param health       its health
+	 */
+	void reportHealth(String terminalName, TerminalHealth health) {
+		systemStatus.setTerminalHealth(terminalName, health);
 	}
 
 	/**
-	 * Read the Card UID.
-	 * This is done in a Callable so we can extract it as a future and get the value (or cancel). And due to the
-	 * bulkhead protection strategy, we certainly do not want to do this on the main thread.
+	 * Get the amount of times each event happened, per terminal, since the start of this reader
+	 *
+	 * @return the event counts, by terminal name
 	 */
-	private static class CardUuidReader implements Callable {
+	public Map<String, Map<ReaderEvent, Long>> getCounters() {
+		Map<String, Map<ReaderEvent, Long>> snapshot = new TreeMap<>();
+		counters.forEach((name, terminalCounters) -> snapshot.put(name, terminalCounters.snapshot()));
+		return snapshot;
+	}
 
-		private static final String SUCCESS_SUFFIX = "9000";
-		private final CardTerminal terminal;
+	/**
+	 * Get the rate (per minute) at which each event happens, per terminal
+	 *
+	 * @return the event rates, by terminal name
+	 */
+	public Map<String, Map<ReaderEvent, EventRate>> getRates() {
+		Map<String, Map<ReaderEvent, EventRate>> snapshot = new TreeMap<>();
+		counters.forEach((name, terminalCounters) -> snapshot.put(name, terminalCounters.rates()));
+		return snapshot;
+	}
 
-		public CardUuidReader(CardTerminal terminal) {
-			this.terminal = terminal;
+	/**
+	 * Queue a scan to be output. Returns as soon as the scan is queued (unless the queue is full and should block)
+	 *
+	 * @param event the scan
+	 */
+	void deliver(ScanEvent event) {
+		try {
+			if (!outputQueue.offer(event)) {
+				System.out.println(
+						"[" + event.getTerminalName() + "] " + event.getUid() + " is already waiting to be typed");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
+	}
+
+	/**
+	 * Listen to every scan handed to the output, and what happened to it. The listener is called on the thread of the
+	 * output queue, so it should return quickly
+	 *
+	 * @param listener the listener
+	 */
+	public void addScanListener(BiConsumer<ScanEvent, DeliveryStatus> listener) {
+		scanListeners.add(listener);
+	}
 
-		/**
-		 * Get the uid of a card
-		 *
-		 * @return a String with the value of the uid (not empty)
-		 * @throws CardException in case of an error
-		 */
-		public String call() throws Exception {
-			String uid;
+	/**
+	 * Record what happened to a scan in the journal, and tell the listeners
+	 */
+	private void delivered(ScanEvent event, DeliveryStatus status) {
+		journal.ifPresent(scans -> scans.append(event, status));
+		for (BiConsumer<ScanEvent, DeliveryStatus> listener : scanListeners) {
 			try {
-				// Connect to card and read
-				Card card = terminal.connect("T=1");
-
-				// Get the basic communication channel
-				CardChannel channel = card.getBasicChannel();
-
-				// Disable the buzzer
-				channel.transmit(Commands.DISABLE_BUZZER);
-
-				// Send data and retrieve output
-				ResponseAPDU response = channel.transmit(Commands.READ);
-				uid = new String(Hex.encodeHex(response.getData())).toUpperCase();
-				if (!new String(Hex.encodeHex(response.getBytes())).endsWith(SUCCESS_SUFFIX)) {
-					// Unsuccessful response
-					card.disconnect(true);
-					throw new CardException(Errors.CARD_READ_FAILURE);
-				}
-				if (uid.isEmpty()) {
-					// Empty response (should not happen, but heh)
-					card.disconnect(true);
-					throw new CardException(Errors.EMPTY_CODE);
-				}
-				card.disconnect(true);
+				listener.accept(event, status);
 			}
-			catch (Smartcardio.JnaPCSCException e) {
-				throw new CardException(Errors.NO_CARD);
+			catch (RuntimeException e) {
+				System.err.println("A scan listener failed");
+				e.printStackTrace();
 			}
-			return uid;
 		}
 	}
 
 	/**
-	 * This simple Runnable class takes a terminal and fires a keep that way. In case the card disconnected, it will
-	 * fail silently
+	 * Send the scan to the sink of its terminal, e.g. emulate a keyboard and "type" the uid, followed by a newline.
+	 * Runs on the thread of the output queue, so scans of different terminals are output one after another and never
+	 * end up interleaved
+	 *
+	 * @param event the scan to output
 	 */
-	private class SingleBuzz implements Runnable {
-
-		private final CardTerminal terminal;
-
-		public SingleBuzz(CardTerminal terminal) {
-			this.terminal = terminal;
+	private void output(ScanEvent event) {
+		long start = System.nanoTime();
+		boolean emitted;
+		try {
+			emitted = sinkFor(event.getTerminalName()).emit(event);
+		}
+		catch (RuntimeException e) {
+			delivered(event, DeliveryStatus.FAILED);
+			throw e;
 		}
+		if (!emitted) {
+			// The sink logged why
+			delivered(event, DeliveryStatus.DROPPED);
+			return;
+		}
+		delivered(event, DeliveryStatus.TYPED);
+		Optional.ofNullable(metrics.get(event.getTerminalName())).ifPresent(terminalMetrics -> {
+			terminalMetrics.recordSince(ScanStage.TYPING, start);
+			terminalMetrics.recordSince(ScanStage.TAP_TO_TYPE, event.getScannedAtNanos());
+		});
+		Optional.ofNullable(counters.get(event.getTerminalName()))
+				.ifPresent(terminalCounters -> terminalCounters.increment(ReaderEvent.OUTPUT));
+		trace.ifPresent(writer -> writer.typed(event.getTerminalName(), event.getUid()));
+		long delay = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - event.getScannedAtNanos());
+		System.out.println(
+				"[" + event.getTerminalName() + "] typed " + event.getUid() + " " + delay + "ms after the scan");
+	}
 
+	/**
+	 * This is a very stupid innerclass, which simply prints the events (since the previous run) and the state of the
+	 * main class every 30 seconds
+	 */
+	private class ErrorLogger implements Runnable {
 		public void run() {
-			try {
-				// Connect to card and read
-				Card card = terminal.connect("T=1");
+			counters.forEach((name, terminalCounters) -> {
+				Map<ReaderEvent, EventRate> rates = terminalCounters.rates();
+				System.out.println("Events of " + name + ": " + terminalCounters.snapshotAndReset().entrySet().stream()
+						.filter(count -> count.getValue() > 0)
+						.map(count -> count.getKey() + "=" + count.getValue() + " ("
+								+ String.format("%.1f", rates.get(count.getKey()).getOneMinute()) + "/min)")
+						.collect(Collectors.joining(", ")));
+			});
+			System.out.println("Executorpool runnables: " + executorService.getQueue());
+			System.out.println("Output queue: " + outputQueue.size() + " waiting, " + outputQueue.getDropped()
+					+ " dropped, " + outputQueue.getCoalesced() + " coalesced");
+			pipelines.forEach(pipeline -> System.out.println(
+					"Bulkhead workers of " + pipeline.getUsedCardTerminalName() + ": " + pipeline.describeBulkhead()));
+			pipelines.forEach(pipeline -> System.out.println(
+					"Health of " + pipeline.getUsedCardTerminalName() + ": " + pipeline.describeHealth()));
+			getLatencies().forEach((name, latencies) -> System.out.println("Latency of " + name + ": "
+					+ latencies.entrySet().stream()
+					.filter(latency -> latency.getValue().getCount() > 0)
+					.map(latency -> latency.getKey() + " " + latency.getValue().toCompactString())
+					.collect(Collectors.joining(" | "))));
+		}
+	}
 
-				// Get the basic communication channel
-				CardChannel channel = card.getBasicChannel();
+	/**
+	 * Hands terminals which are plugged in and out to the pipelines. A terminal which is plugged in goes to the
+	 * pipeline which used it before or, if there is none, to a pipeline which lost a terminal matching the same
+	 * preference. This way a flaky terminal can be swapped for another of the same type
+	 */
+	private class TerminalRouter implements TerminalInventory.Listener {
 
-				// Send a single buzzer event
-				CommandAPDU oneBuzz = new CommandAPDU(Bytes.concat(Commands.ONE_BUZZ_APDU, Commands.ONE_BUZZ_DATA));
-				channel.transmit(oneBuzz);
-			}
-			catch (Exception e) {
-				// Might well be triggered if the card is removed before this method is called. Not buzzing is not a
-				// very big deal though
-				System.err.println("Could not buzz");
+		@Override
+		public void attached(CardTerminal terminal) {
+			System.out.println("Terminals (version " + inventory.getVersion() + "): " + inventory.list());
+			Optional<TerminalPipeline> pipeline = pipelines.stream()
+					.filter(candidate -> candidate.getTerminalName().equals(terminal.getName()))
+					.findFirst();
+			if (!pipeline.isPresent()) {
+				int preference = preferenceOf(terminal.getName());
+				pipeline = pipelines.stream()
+						.filter(candidate -> !candidate.isAttached())
+						.filter(candidate -> preferenceOf(candidate.getTerminalName()) == preference)
+						.findFirst();
 			}
+			pipeline.ifPresent(found -> {
+				found.terminalAttached(terminal);
+				reportHealth(found.getUsedCardTerminalName(), found.getHealth());
+			});
+		}
+
+		@Override
+		public void detached(String terminalName) {
+			System.out.println("Terminals (version " + inventory.getVersion() + "): " + inventory.list());
+			pipelines.stream()
+					.filter(pipeline -> pipeline.getTerminalName().equals(terminalName) && pipeline.isAttached())
+					.forEach(pipeline -> {
+						pipeline.terminalDetached();
+						// Not shown as healthy (or not) while it is gone
+						systemStatus.removeTerminalHealth(pipeline.getUsedCardTerminalName());
+					});
 		}
 	}
 }
@@ -0,0 +1,115 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * This class holds the settings with which a Reader is created
+ */
+@ToString
+public class ReaderConfiguration {
+
+	@Getter
+	@Setter
+	private boolean shouldBuzz = true;
+
+	@Getter
+	@Setter
+	private DetectionMode detectionMode = DetectionMode.EVENT;
+
+	// The shortest and longest interval between two polls, when polling for cards
+	@Getter
+	@Setter
+	private long pollFloorInMs = 25;
+
+	@Getter
+	@Setter
+	private long pollCeilingInMs = 500;
+
+	@Getter
+	@Setter
+	private boolean multiTerminal;
+
+	// Type through a virtual keyboard of the Linux kernel instead of the AWT Robot, when possible
+	@Getter
+	@Setter
+	private boolean uinput;
+
+	@Getter
+	@Setter
+	private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+
+	@Getter
+	@Setter
+	private int outputQueueCapacity = 16;
+
+	// The time in which a card which is tapped again is not output again
+	@Getter
+	@Setter
+	private long dedupWindowInMs = 1250;
+
+	@Getter
+	@Setter
+	private int recentUidCapacity = 256;
+
+	// When set, the simulated terminals of the simulation are used instead of PC/SC
+	@Getter
+	@Setter
+	private Simulation simulation;
+
+	// When set, everything which happens on the terminals is recorded in this trace
+	@Getter
+	@Setter
+	private Path tracePath;
+
+	// When set, the terminals replay a trace. Takes precedence over the simulation
+	@Getter
+	@Setter
+	private TraceReplayer replay;
+
+	// Where the journal of all output scans is kept, null to not keep a journal
+	@Getter
+	@Setter
+	private Path journalDirectory = Paths.get(System.getProperty("user.home"), ".rfid-reader2keyboard", "journal");
+
+	// The journal is a ring of segments, so it never takes more than segments times their size of disk space
+	@Getter
+	@Setter
+	private int journalSegments = 16;
+
+	@Getter
+	@Setter
+	private int journalSegmentSizeInBytes = 1024 * 1024;
+
+	// When set, cards are checked against this list of uids before they are typed
+	@Getter
+	@Setter
+	private Path uidListPath;
+
+	@Getter
+	@Setter
+	private UidListMode uidListMode = UidListMode.ALLOW;
+
+	// Where the scans go, unless the terminal has a sink of its own
+	@Getter
+	@Setter
+	private SinkType sink = SinkType.KEYBOARD;
+
+	// The sinks of specific terminals, by (a part of) their name
+	@Getter
+	private final Map<String, SinkType> terminalSinks = new LinkedHashMap<>();
+
+	@Getter
+	@Setter
+	private int sinkPort = 7777;
+
+	@Getter
+	@Setter
+	private Path sinkPipePath;
+}
@@ -0,0 +1,64 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * The events which are counted for each terminal
+ */
+public enum ReaderEvent {
+	NO_CARD,
+	REMOVED,
+	READER_UNAVAILABLE,
+	TRANSACTION_FAILED,
+	TIMEOUT,
+	READ_FAILURE,
+	EMPTY_CODE,
+	UNKNOWN_ERROR,
+	/**
+	 * The status change notification failed
+	 */
+	STATUS_CHANGE_FAILURE,
+	/**
+	 * No read was attempted, since all workers of the bulkhead were busy or hung
+	 */
+	SATURATED,
+	/**
+	 * Something unexpected happened, after which the terminal is reconnected. Also counted as UNKNOWN_ERROR
+	 */
+	RECOVERY,
+	/**
+	 * Reconnected to the terminal, because it was not healthy
+	 */
+	RECONNECT,
+	/**
+	 * A card was read which was not output again
+	 */
+	DUPLICATE,
+	/**
+	 * A card was read which was not output, since the uid list rejected it
+	 */
+	REJECTED,
+	/**
+	 * A card was read and queued to be output
+	 */
+	SCAN,
+	/**
+	 * A card was output
+	 */
+	OUTPUT,
+	;
+
+	private static final ReaderEvent[] BY_OUTCOME = new ReaderEvent[ReadOutcome.values().length];
+
+	static {
+		for (ReadOutcome outcome : ReadOutcome.values()) {
+			BY_OUTCOME[outcome.ordinal()] = outcome == ReadOutcome.CARD ? SCAN : valueOf(outcome.name());
+		}
+	}
+
+	/**
+	 * @param outcome the outcome of a read
+	 * @return the event to count for it
+	 */
+	static ReaderEvent of(ReadOutcome outcome) {
+		return BY_OUTCOME[outcome.ordinal()];
+	}
+}
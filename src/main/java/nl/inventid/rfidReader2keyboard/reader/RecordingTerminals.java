@@ -0,0 +1,246 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import javax.smartcardio.ATR;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Wraps terminals, so everything which happens on them is recorded in a trace: cards arriving and leaving, every
+ * command with its response and duration, and every PC/SC error code
+ */
+class RecordingTerminals extends CardTerminals {
+
+	private final CardTerminals terminals;
+	private final TraceWriter trace;
+	// The last known presence of a card, per terminal, so only changes are recorded
+	private final Map<String, Boolean> cardPresent;
+
+	/**
+	 * @param terminals   the terminals to record
+	 * @param trace       where to record to
+	 * @param cardPresent the last known presence of a card per terminal, shared by all recorded contexts
+	 */
+	RecordingTerminals(CardTerminals terminals, TraceWriter trace, Map<String, Boolean> cardPresent) {
+		this.terminals = terminals;
+		this.trace = trace;
+		this.cardPresent = cardPresent;
+	}
+
+	@Override
+	public List<CardTerminal> list(State state) throws CardException {
+		return terminals.list(state).stream().map(RecordingTerminal::new).collect(Collectors.toList());
+	}
+
+	@Override
+	public boolean waitForChange(long timeout) throws CardException {
+		return terminals.waitForChange(timeout);
+	}
+
+	private void presence(String terminalName, boolean present) {
+		Boolean previous = cardPresent.put(terminalName, present);
+		if (previous == null || previous != present) {
+			if (present) {
+				trace.cardPresent(terminalName);
+			}
+			else {
+				trace.cardAbsent(terminalName);
+			}
+		}
+	}
+
+	private CardException failed(String terminalName, CardException e) {
+		trace.error(terminalName, Errors.codeOf(e));
+		return e;
+	}
+
+	private class RecordingTerminal extends CardTerminal {
+
+		private final CardTerminal terminal;
+
+		RecordingTerminal(CardTerminal terminal) {
+			this.terminal = terminal;
+		}
+
+		@Override
+		public String getName() {
+			return terminal.getName();
+		}
+
+		@Override
+		public Card connect(String protocol) throws CardException {
+			try {
+				return new RecordingCard(terminal.connect(protocol), getName());
+			}
+			catch (CardException e) {
+				throw failed(getName(), e);
+			}
+		}
+
+		@Override
+		public boolean isCardPresent() throws CardException {
+			try {
+				boolean present = terminal.isCardPresent();
+				presence(getName(), present);
+				return present;
+			}
+			catch (CardException e) {
+				throw failed(getName(), e);
+			}
+		}
+
+		@Override
+		public boolean waitForCardPresent(long timeout) throws CardException {
+			try {
+				boolean present = terminal.waitForCardPresent(timeout);
+				if (present) {
+					presence(getName(), true);
+				}
+				return present;
+			}
+			catch (CardException e) {
+				throw failed(getName(), e);
+			}
+		}
+
+		@Override
+		public boolean waitForCardAbsent(long timeout) throws CardException {
+			try {
+				boolean absent = terminal.waitForCardAbsent(timeout);
+				if (absent) {
+					presence(getName(), false);
+				}
+				return absent;
+			}
+			catch (CardException e) {
+				throw failed(getName(), e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return terminal.toString();
+		}
+	}
+
+	private class RecordingCard extends Card {
+
+		private final Card card;
+		private final String terminalName;
+		private final RecordingChannel basicChannel;
+
+		RecordingCard(Card card, String terminalName) {
+			this.card = card;
+			this.terminalName = terminalName;
+			this.basicChannel = new RecordingChannel(card.getBasicChannel(), this);
+		}
+
+		@Override
+		public ATR getATR() {
+			return card.getATR();
+		}
+
+		@Override
+		public String getProtocol() {
+			return card.getProtocol();
+		}
+
+		@Override
+		public CardChannel getBasicChannel() {
+			return basicChannel;
+		}
+
+		@Override
+		public CardChannel openLogicalChannel() throws CardException {
+			return new RecordingChannel(card.openLogicalChannel(), this);
+		}
+
+		@Override
+		public void beginExclusive() throws CardException {
+			card.beginExclusive();
+		}
+
+		@Override
+		public void endExclusive() throws CardException {
+			card.endExclusive();
+		}
+
+		@Override
+		public byte[] transmitControlCommand(int controlCode, byte[] command) throws CardException {
+			return card.transmitControlCommand(controlCode, command);
+		}
+
+		@Override
+		public void disconnect(boolean reset) throws CardException {
+			card.disconnect(reset);
+		}
+	}
+
+	private class RecordingChannel extends CardChannel {
+
+		private final CardChannel channel;
+		private final RecordingCard card;
+
+		RecordingChannel(CardChannel channel, RecordingCard card) {
+			this.channel = channel;
+			this.card = card;
+		}
+
+		@Override
+		public Card getCard() {
+			return card;
+		}
+
+		@Override
+		public int getChannelNumber() {
+			return channel.getChannelNumber();
+		}
+
+		@Override
+		public ResponseAPDU transmit(CommandAPDU command) throws CardException {
+			long start = System.nanoTime();
+			try {
+				ResponseAPDU response = channel.transmit(command);
+				trace.apdu(card.terminalName, System.nanoTime() - start, command.getBytes(), response.getBytes());
+				return response;
+			}
+			catch (CardException e) {
+				throw failed(card.terminalName, e);
+			}
+		}
+
+		@Override
+		public int transmit(ByteBuffer command, ByteBuffer response) throws CardException {
+			byte[] commandBytes = new byte[command.remaining()];
+			command.duplicate().get(commandBytes);
+			int responseStart = response.position();
+			long start = System.nanoTime();
+			try {
+				int length = channel.transmit(command, response);
+				byte[] responseBytes = new byte[length];
+				ByteBuffer written = response.duplicate();
+				written.position(responseStart);
+				written.get(responseBytes);
+				trace.apdu(card.terminalName, System.nanoTime() - start, commandBytes, responseBytes);
+				return length;
+			}
+			catch (CardException e) {
+				throw failed(card.terminalName, e);
+			}
+		}
+
+		@Override
+		public void close() throws CardException {
+			channel.close();
+		}
+	}
+}
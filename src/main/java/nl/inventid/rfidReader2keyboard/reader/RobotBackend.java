@@ -0,0 +1,37 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.awt.*;
+
+/**
+ * Injects key events using the AWT Robot
+ */
+class RobotBackend implements KeyboardBackend {
+
+	private final Robot robot;
+
+	/**
+	 * @param autoDelayMs the time the robot sleeps after each event, since some applications drop keys which are typed
+	 *                    too fast
+	 * @throws AWTException if the platform does not allow a Robot
+	 */
+	RobotBackend(int autoDelayMs) throws AWTException {
+		this.robot = new Robot();
+		robot.setAutoDelay(autoDelayMs);
+		System.out.println("Robot initialized with an autodelay of " + robot.getAutoDelay() + "ms");
+	}
+
+	@Override
+	public void send(int[] events, int length) {
+		for (int i = 0; i < length; i++) {
+			int event = events[i];
+			if (event > 0) {
+				robot.keyPress(event);
+			}
+			else {
+				robot.keyRelease(-event);
+			}
+		}
+		// Only sync with the event queue once for the whole batch
+		robot.waitForIdle();
+	}
+}
@@ -0,0 +1,35 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.time.Instant;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A card which was scanned on a terminal, and should be output
+ */
+@Getter
+@ToString
+public final class ScanEvent {
+
+	private final String terminalName;
+	private final Uid uid;
+	private final Instant timestamp;
+	// System.nanoTime() of the scan, to measure the time until the scan is output
+	private final long scannedAtNanos;
+
+	ScanEvent(String terminalName, Uid uid) {
+		this.terminalName = terminalName;
+		this.uid = uid;
+		this.timestamp = Instant.now();
+		this.scannedAtNanos = System.nanoTime();
+	}
+
+	/**
+	 * @param other another scan
+	 * @return true if both scans are of the same card on the same terminal
+	 */
+	boolean isSameScanAs(ScanEvent other) {
+		return uid.equals(other.uid) && terminalName.equals(other.terminalName);
+	}
+}
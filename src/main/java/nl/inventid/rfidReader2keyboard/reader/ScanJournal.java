@@ -0,0 +1,415 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A journal of every scan handed to the output, and what happened to it. The journal is a fixed ring of segment files
+ * which are memory mapped, so appending a scan is a few writes to memory, and the scans survive a crash of the JVM
+ * (the operating system writes the mapped pages to disk). When the newest segment is full, the oldest one is reused,
+ * so the journal never takes more disk space than the segments it started with. Segments are never deleted, since a
+ * mapped file cannot be deleted on Windows.
+ *
+ * A segment starts with a header, holding the names of the terminals in the segment and a bitmap of the hashes of
+ * its uids, followed by fixed size records in order of appending. Scans are found by time with a binary search, and by
+ * uid by only scanning the segments whose bitmap may hold the uid. The records are in order of time as long as the
+ * clock does not go backwards (e.g. when it is corrected). A segment in which it did is marked in its header, and is
+ * searched by time with a linear scan instead.
+ *
+ * Appending is done by a single thread (the output thread), lookups may be done by any thread. The directory is locked
+ * while the journal is open, so two readers (e.g. two instances of the software) never write the same segments.
+ */
+public class ScanJournal {
+
+	private static final byte[] MAGIC = new byte[] { 'R', 'F', 'I', 'D', 'J', 'R', 'N', '1' };
+	private static final int HEADER_SIZE = 4096;
+	private static final int GENERATION_OFFSET = 8;
+	private static final int COUNT_OFFSET = 16;
+	private static final int TERMINAL_COUNT_OFFSET = 20;
+	private static final int NAMES_OFFSET = 24;
+	private static final int MAX_TERMINALS = 16;
+	private static final int NAME_SIZE = 62;
+	private static final int UNORDERED_OFFSET = 1016;
+	private static final int BITMAP_OFFSET = 1024;
+	private static final int BITMAP_BITS = (HEADER_SIZE - BITMAP_OFFSET) * 8;
+	private static final int RECORD_SIZE = 32;
+	private static final int UNKNOWN_TERMINAL = 0xFF;
+	private static final DeliveryStatus[] STATUSES = DeliveryStatus.values();
+	private static final String LOCK_FILE = "journal.lock";
+
+	private final Segment[] segments;
+	private final int capacity;
+	private final FileLock lock;
+
+	private Segment current;
+
+	/**
+	 * Open the journal in the given directory, creating its segments if needed
+	 *
+	 * @param directory    where to keep the segments
+	 * @param segmentCount the amount of segments
+	 * @param segmentSize  the size of a segment in bytes
+	 * @throws IOException if a segment cannot be created or mapped
+	 * @throws JournalInUseException if another reader has the journal open
+	 */
+	public ScanJournal(Path directory, int segmentCount, int segmentSize) throws IOException {
+		Files.createDirectories(directory);
+		this.capacity = (segmentSize - HEADER_SIZE) / RECORD_SIZE;
+		this.segments = new Segment[segmentCount];
+		this.lock = lock(directory);
+		try {
+			for (int i = 0; i < segmentCount; i++) {
+				Path path = directory.resolve(String.format("scans-%02d.journal", i));
+				try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+						StandardOpenOption.WRITE)) {
+					// The mapping stays valid after closing the channel
+					segments[i] = new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize),
+							capacity);
+				}
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			unlock();
+			throw e;
+		}
+		current = Arrays.stream(segments).max(Comparator.comparingLong(Segment::getGeneration)).get();
+		if (current.getGeneration() == 0) {
+			current.reset(1);
+		}
+	}
+
+	/**
+	 * Append a scan to the journal. Only to be called by a single thread
+	 *
+	 * @param event  the scan
+	 * @param status what happened to the scan
+	 */
+	public void append(ScanEvent event, DeliveryStatus status) {
+		if (current.count >= capacity) {
+			Segment oldest = Arrays.stream(segments).min(Comparator.comparingLong(Segment::getGeneration)).get();
+			oldest.reset(current.getGeneration() + 1);
+			current = oldest;
+		}
+		current.append(event, status);
+	}
+
+	/**
+	 * @param from the first time to include
+	 * @param to   the last time to include
+	 * @return the scans within the time range, in the order they were appended
+	 */
+	public List<JournalEntry> find(Instant from, Instant to) {
+		long fromMillis = from.toEpochMilli();
+		long toMillis = to.toEpochMilli();
+		List<JournalEntry> found = new ArrayList<>();
+		for (Segment segment : inOrder()) {
+			long generation = segment.getGeneration();
+			int count = segment.count;
+			List<JournalEntry> entries = new ArrayList<>();
+			if (segment.unordered) {
+				// The clock went backwards while writing this segment
+				for (int i = 0; i < count; i++) {
+					long millis = segment.timeAt(i);
+					if (millis >= fromMillis && millis <= toMillis) {
+						entries.add(segment.entryAt(i));
+					}
+				}
+			}
+			else if (count > 0 && segment.timeAt(0) <= toMillis && segment.timeAt(count - 1) >= fromMillis) {
+				int start = segment.firstAtOrAfter(fromMillis, count);
+				for (int i = start; i < count && segment.timeAt(i) <= toMillis; i++) {
+					entries.add(segment.entryAt(i));
+				}
+			}
+			if (segment.getGeneration() == generation) {
+				// Otherwise the segment was reused while reading it
+				found.addAll(entries);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @param uid the uid of a card
+	 * @return the scans of the card, oldest first
+	 */
+	public List<JournalEntry> find(Uid uid) {
+		List<JournalEntry> found = new ArrayList<>();
+		for (Segment segment : inOrder()) {
+			long generation = segment.getGeneration();
+			if (!segment.mayContain(uid)) {
+				continue;
+			}
+			List<JournalEntry> entries = new ArrayList<>();
+			int count = segment.count;
+			for (int i = 0; i < count; i++) {
+				if (segment.uidMatches(i, uid)) {
+					entries.add(segment.entryAt(i));
+				}
+			}
+			if (segment.getGeneration() == generation) {
+				found.addAll(entries);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Write all scans to disk. Not needed to survive a crash of the JVM, only to survive a crash of the operating
+	 * system or a loss of power
+	 */
+	public void close() {
+		Arrays.stream(segments).forEach(segment -> segment.buffer.force());
+		unlock();
+	}
+
+	/**
+	 * @return the amount of scans the journal holds before the oldest ones are overwritten
+	 */
+	public long getCapacity() {
+		return (long) capacity * segments.length;
+	}
+
+	/**
+	 * Lock the directory for this process. The lock is released by the operating system when the process dies
+	 */
+	private static FileLock lock(Path directory) throws IOException {
+		FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		try {
+			FileLock acquired = channel.tryLock();
+			if (acquired != null) {
+				return acquired;
+			}
+		}
+		catch (OverlappingFileLockException e) {
+			// Locked by another reader in this JVM
+		}
+		catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		channel.close();
+		throw new JournalInUseException(directory);
+	}
+
+	private void unlock() {
+		try {
+			lock.release();
+			lock.channel().close();
+		}
+		catch (IOException e) {
+			// Released anyway when the process exits
+		}
+	}
+
+	private List<Segment> inOrder() {
+		List<Segment> inOrder = new ArrayList<>(Arrays.asList(segments));
+		inOrder.removeIf(segment -> segment.getGeneration() == 0);
+		inOrder.sort(Comparator.comparingLong(Segment::getGeneration));
+		return inOrder;
+	}
+
+	private static int bitOf(Uid uid, int seed) {
+		int hash = uid.hashCode() * (seed == 0 ? 0x9E3779B1 : 0x85EBCA6B);
+		return ((hash ^ (hash >>> 15)) & 0x7FFFFFFF) % BITMAP_BITS;
+	}
+
+	/**
+	 * A single mapped segment file
+	 */
+	private static class Segment {
+
+		private final MappedByteBuffer buffer;
+		private final List<String> terminalNames = new ArrayList<>();
+
+		// Written after each record, so a thread reading this sees the whole record
+		private volatile int count;
+		private volatile long generation;
+		// Whether the clock went backwards while writing, so the records are not in order of time
+		private volatile boolean unordered;
+
+		/**
+		 * @param path     the file of the segment, for logging
+		 * @param buffer   the mapped file
+		 * @param capacity the amount of records which fit in the mapping
+		 */
+		Segment(Path path, MappedByteBuffer buffer, int capacity) {
+			this.buffer = buffer;
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (buffer.get(i) != MAGIC[i]) {
+					// New (or unknown) file
+					return;
+				}
+			}
+			this.generation = buffer.getLong(GENERATION_OFFSET);
+			int storedCount = buffer.getInt(COUNT_OFFSET);
+			if (storedCount < 0 || storedCount > capacity) {
+				// Written with a larger segment size, or a torn header. Keep the records which fit in the mapping
+				System.err.println("Journal segment " + path + " claims " + storedCount + " scans, but only "
+						+ capacity + " fit in it");
+				storedCount = Math.max(0, Math.min(storedCount, capacity));
+				buffer.putInt(COUNT_OFFSET, storedCount);
+			}
+			this.count = storedCount;
+			this.unordered = buffer.get(UNORDERED_OFFSET) != 0;
+			int terminals = Math.max(0, Math.min(buffer.getInt(TERMINAL_COUNT_OFFSET), MAX_TERMINALS));
+			for (int i = 0; i < terminals; i++) {
+				terminalNames.add(readName(i));
+			}
+		}
+
+		long getGeneration() {
+			return generation;
+		}
+
+		/**
+		 * Empty the segment, to fill it again
+		 */
+		void reset(long newGeneration) {
+			generation = newGeneration;
+			count = 0;
+			unordered = false;
+			synchronized (terminalNames) {
+				terminalNames.clear();
+			}
+			for (int i = 0; i < HEADER_SIZE; i++) {
+				buffer.put(i, (byte) 0);
+			}
+			for (int i = 0; i < MAGIC.length; i++) {
+				buffer.put(i, MAGIC[i]);
+			}
+			buffer.putLong(GENERATION_OFFSET, newGeneration);
+		}
+
+		void append(ScanEvent event, DeliveryStatus status) {
+			int offset = HEADER_SIZE + count * RECORD_SIZE;
+			Uid uid = event.getUid();
+			long millis = event.getTimestamp().toEpochMilli();
+			if (!unordered && count > 0 && millis < timeAt(count - 1)) {
+				unordered = true;
+				buffer.put(UNORDERED_OFFSET, (byte) 1);
+			}
+			buffer.putLong(offset, millis);
+			buffer.put(offset + 8, (byte) status.ordinal());
+			buffer.put(offset + 9, (byte) terminalIndex(event.getTerminalName()));
+			buffer.put(offset + 10, (byte) uid.length());
+			for (int i = 0; i < uid.length(); i++) {
+				buffer.put(offset + 11 + i, (byte) uid.byteAt(i));
+			}
+			setBit(bitOf(uid, 0));
+			setBit(bitOf(uid, 1));
+			buffer.putInt(COUNT_OFFSET, count + 1);
+			count++;
+		}
+
+		long timeAt(int index) {
+			return buffer.getLong(HEADER_SIZE + index * RECORD_SIZE);
+		}
+
+		/**
+		 * @return the index of the first record at or after the given time
+		 */
+		int firstAtOrAfter(long millis, int count) {
+			int low = 0;
+			int high = count;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (timeAt(middle) < millis) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		boolean mayContain(Uid uid) {
+			return isSet(bitOf(uid, 0)) && isSet(bitOf(uid, 1));
+		}
+
+		boolean uidMatches(int index, Uid uid) {
+			int offset = HEADER_SIZE + index * RECORD_SIZE;
+			if ((buffer.get(offset + 10) & 0xFF) != uid.length()) {
+				return false;
+			}
+			for (int i = 0; i < uid.length(); i++) {
+				if ((buffer.get(offset + 11 + i) & 0xFF) != uid.byteAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		JournalEntry entryAt(int index) {
+			int offset = HEADER_SIZE + index * RECORD_SIZE;
+			int status = buffer.get(offset + 8) & 0xFF;
+			int terminal = buffer.get(offset + 9) & 0xFF;
+			int length = buffer.get(offset + 10) & 0xFF;
+			ByteBuffer uid = buffer.duplicate();
+			uid.position(offset + 11);
+			return new JournalEntry(Instant.ofEpochMilli(buffer.getLong(offset)), terminalName(terminal),
+					Uid.of(uid.slice(), length), status < STATUSES.length ? STATUSES[status] : null);
+		}
+
+		private String terminalName(int index) {
+			synchronized (terminalNames) {
+				return index < terminalNames.size() ? terminalNames.get(index) : "?";
+			}
+		}
+
+		private int terminalIndex(String terminalName) {
+			synchronized (terminalNames) {
+				int index = terminalNames.indexOf(terminalName);
+				if (index >= 0) {
+					return index;
+				}
+				if (terminalNames.size() == MAX_TERMINALS) {
+					return UNKNOWN_TERMINAL;
+				}
+				byte[] name = terminalName.getBytes(StandardCharsets.UTF_8);
+				int length = Math.min(name.length, NAME_SIZE - 2);
+				int offset = NAMES_OFFSET + terminalNames.size() * NAME_SIZE;
+				buffer.putShort(offset, (short) length);
+				for (int i = 0; i < length; i++) {
+					buffer.put(offset + 2 + i, name[i]);
+				}
+				terminalNames.add(terminalName);
+				buffer.putInt(TERMINAL_COUNT_OFFSET, terminalNames.size());
+				return terminalNames.size() - 1;
+			}
+		}
+
+		private String readName(int index) {
+			int offset = NAMES_OFFSET + index * NAME_SIZE;
+			byte[] name = new byte[Math.max(0, Math.min(buffer.getShort(offset), NAME_SIZE - 2))];
+			for (int i = 0; i < name.length; i++) {
+				name[i] = buffer.get(offset + 2 + i);
+			}
+			return new String(name, StandardCharsets.UTF_8);
+		}
+
+		private void setBit(int bit) {
+			int offset = BITMAP_OFFSET + bit / 8;
+			buffer.put(offset, (byte) (buffer.get(offset) | (1 << (bit % 8))));
+		}
+
+		private boolean isSet(int bit) {
+			return (buffer.get(BITMAP_OFFSET + bit / 8) & (1 << (bit % 8))) != 0;
+		}
+	}
+}
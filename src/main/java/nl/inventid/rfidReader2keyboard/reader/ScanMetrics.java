@@ -0,0 +1,64 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The latency histograms of all scan stages of a single terminal, since the start and of about the last minute
+ */
+public class ScanMetrics {
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[ScanStage.values().length];
+	private final WindowedLatencyHistogram[] recentHistograms = new WindowedLatencyHistogram[histograms.length];
+
+	ScanMetrics() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new LatencyHistogram();
+			recentHistograms[i] = new WindowedLatencyHistogram();
+		}
+	}
+
+	/**
+	 * Record the duration of a stage
+	 *
+	 * @param stage the stage which finished
+	 * @param nanos how long it took
+	 */
+	void record(ScanStage stage, long nanos) {
+		histograms[stage.ordinal()].record(nanos);
+		recentHistograms[stage.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Record the time since a start time for a stage
+	 *
+	 * @param stage      the stage which finished
+	 * @param startNanos the System.nanoTime() at the start of the stage
+	 */
+	void recordSince(ScanStage stage, long startNanos) {
+		record(stage, System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * @param reset whether to start counting from scratch after this snapshot
+	 * @return the latencies of each stage
+	 */
+	public Map<ScanStage, LatencySnapshot> snapshot(boolean reset) {
+		Map<ScanStage, LatencySnapshot> snapshot = new EnumMap<>(ScanStage.class);
+		for (ScanStage stage : ScanStage.values()) {
+			snapshot.put(stage, histograms[stage.ordinal()].snapshot(reset));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return the latencies of each stage in about the last minute
+	 */
+	public Map<ScanStage, LatencySnapshot> recentSnapshot() {
+		Map<ScanStage, LatencySnapshot> snapshot = new EnumMap<>(ScanStage.class);
+		for (ScanStage stage : ScanStage.values()) {
+			snapshot.put(stage, recentHistograms[stage.ordinal()].snapshot());
+		}
+		return snapshot;
+	}
+}
@@ -0,0 +1,21 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * Something which outputs scans. Scans are emitted one at a time by the thread of the output queue
+ */
+interface ScanSink {
+
+	/**
+	 * Output a scan, and wait until it is output
+	 *
+	 * @param event the scan
+	 * @return true if the scan was output, false if the sink dropped it, e.g. since nobody reads the sink
+	 */
+	boolean emit(ScanEvent event);
+
+	/**
+	 * Release whatever the sink holds on to. The sink is not used anymore afterwards
+	 */
+	default void close() {
+	}
+}
@@ -0,0 +1,36 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * The stages of a scan of which the latency is measured
+ */
+public enum ScanStage {
+	/**
+	 * From the detection loop waking up (the status change firing, or the poll being due) until the read is started.
+	 * Only recorded for reads which found a card, so idle polls do not drown out the scans
+	 */
+	POLL_WAKEUP,
+	/**
+	 * Checking for and connecting to a card
+	 */
+	CONNECT,
+	/**
+	 * A single APDU round trip
+	 */
+	APDU,
+	/**
+	 * Deciding whether a read card should be output
+	 */
+	DEDUP,
+	/**
+	 * Queueing a scan to be output
+	 */
+	ENQUEUE,
+	/**
+	 * Typing a scan
+	 */
+	TYPING,
+	/**
+	 * From the card being read until it was typed
+	 */
+	TAP_TO_TYPE,
+}
@@ -0,0 +1,94 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+import javax.smartcardio.TerminalFactorySpi;
+
+import java.security.Provider;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A security provider for the "Simulated" TerminalFactory, whose terminals are the simulated terminals of the
+ * Simulation passed as the parameter of the factory, e.g.
+ * {@code TerminalFactory.getInstance(SimulatedProvider.TYPE, simulation, new SimulatedProvider())}
+ */
+public class SimulatedProvider extends Provider {
+
+	public static final String TYPE = "Simulated";
+
+	// The constructor taking a String version only exists since Java 9, and Java 8 is still the target
+	@SuppressWarnings("deprecation")
+	public SimulatedProvider() {
+		super("SimulatedPCSC", 1.0, "Simulated PC/SC terminals, for load testing without hardware");
+		put("TerminalFactory." + TYPE, Factory.class.getName());
+	}
+
+	/**
+	 * Instantiated by the TerminalFactory, with the simulation as its parameter
+	 */
+	public static class Factory extends TerminalFactorySpi {
+
+		private final Simulation simulation;
+
+		public Factory(Object parameter) {
+			if (!(parameter instanceof Simulation)) {
+				throw new IllegalArgumentException("A simulated TerminalFactory needs a Simulation as its parameter");
+			}
+			this.simulation = (Simulation) parameter;
+		}
+
+		@Override
+		protected CardTerminals engineTerminals() {
+			return new Terminals(simulation);
+		}
+	}
+
+	/**
+	 * All terminals of a simulation. Any card being inserted or removed is a change
+	 */
+	private static class Terminals extends CardTerminals {
+
+		private final Simulation simulation;
+		private long seenChanges;
+
+		Terminals(Simulation simulation) {
+			this.simulation = simulation;
+		}
+
+		@Override
+		public List<CardTerminal> list(State state) {
+			return simulation.getTerminals().stream()
+					.filter(terminal -> matches(terminal, state))
+					.collect(Collectors.<CardTerminal>toList());
+		}
+
+		@Override
+		public boolean waitForChange(long timeout) throws CardException {
+			try {
+				long changes = simulation.awaitChange(seenChanges, timeout);
+				boolean changed = changes != seenChanges;
+				seenChanges = changes;
+				return changed;
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CardException("Interrupted while waiting for a change");
+			}
+		}
+
+		private static boolean matches(SimulatedTerminal terminal, State state) {
+			switch (state) {
+				case CARD_PRESENT:
+				case CARD_INSERTION:
+					return terminal.isCardPresent();
+				case CARD_ABSENT:
+				case CARD_REMOVAL:
+					return !terminal.isCardPresent();
+				default:
+					return true;
+			}
+		}
+	}
+}
@@ -0,0 +1,321 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import javax.smartcardio.ATR;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import jnasmartcardio.Smartcardio;
+
+/**
+ * A terminal of a Simulation, on which cards can be inserted and removed. It answers the commands of this project
+ * like an ACR122U would, and fails with the PC/SC codes a real terminal fails with.
+ */
+public class SimulatedTerminal extends CardTerminal {
+
+	// The ATR of a MIFARE Classic 1K, as reported by the ACR122U
+	private static final ATR ATR = new ATR(new byte[] { 0x3B, (byte) 0x8F, (byte) 0x80, 0x01, (byte) 0x80, 0x4F, 0x0C,
+			(byte) 0xA0, 0x00, 0x00, 0x03, 0x06, 0x03, 0x00, 0x01, 0x00, 0x00, 0x00, 0x00, 0x6A });
+	private static final byte[] SUCCESS = new byte[] { (byte) 0x90, 0x00 };
+	private static final int MAX_INJECTED_FAILURES = 16;
+
+	private final String name;
+	private final Simulation simulation;
+	private final Object[] lock = new Object[0];
+	private final Queue<Integer> injectedFailures = new ConcurrentLinkedQueue<>();
+
+	// The latency of commands when set (not negative), instead of the latency of the simulation
+	private volatile long latencyInNanos = -1;
+
+	private Uid card;
+	// Increases on every insertion, so a connection to a card which was removed in the meantime fails
+	private long insertions;
+	// The last insertion of which the uid was read
+	private long readInsertion;
+
+	SimulatedTerminal(String name, Simulation simulation) {
+		this.name = name;
+		this.simulation = simulation;
+	}
+
+	/**
+	 * Put a card on the terminal, replacing the card which was there
+	 *
+	 * @param uid the uid of the card
+	 */
+	public void insert(Uid uid) {
+		synchronized (lock) {
+			card = uid;
+			insertions++;
+			lock.notifyAll();
+		}
+		simulation.changed();
+	}
+
+	/**
+	 * Wait until the uid of the card on the terminal is read
+	 *
+	 * @param timeoutInMs the maximum time to wait
+	 * @return true if the uid was read, false if not within the timeout or if there is no card
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitRead(long timeoutInMs) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+		synchronized (lock) {
+			while (card != null && readInsertion != insertions) {
+				long waitInMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (waitInMs <= 0) {
+					return false;
+				}
+				lock.wait(waitInMs);
+			}
+			return card != null;
+		}
+	}
+
+	/**
+	 * Take the card off the terminal, if there is one
+	 */
+	public void remove() {
+		synchronized (lock) {
+			card = null;
+			lock.notifyAll();
+		}
+		simulation.changed();
+	}
+
+	/**
+	 * Make the next command fail with the given code, instead of a random failure
+	 *
+	 * @param code the PC/SC code
+	 */
+	public void injectFailure(int code) {
+		if (injectedFailures.size() < MAX_INJECTED_FAILURES) {
+			injectedFailures.add(code);
+		}
+	}
+
+	/**
+	 * Make all following commands take the given time, instead of the latency of the simulation
+	 *
+	 * @param latencyInNanos the time a command takes
+	 */
+	public void setLatencyInNanos(long latencyInNanos) {
+		this.latencyInNanos = latencyInNanos;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public Card connect(String protocol) throws CardException {
+		synchronized (lock) {
+			if (card == null) {
+				throw failure(Errors.SCARD_E_NO_SMARTCARD);
+			}
+			return new SimulatedCard(card, insertions, protocol);
+		}
+	}
+
+	@Override
+	public boolean isCardPresent() {
+		synchronized (lock) {
+			return card != null;
+		}
+	}
+
+	@Override
+	public boolean waitForCardPresent(long timeout) throws CardException {
+		return waitFor(true, timeout);
+	}
+
+	@Override
+	public boolean waitForCardAbsent(long timeout) throws CardException {
+		return waitFor(false, timeout);
+	}
+
+	@Override
+	public String toString() {
+		return "SimulatedTerminal: " + name;
+	}
+
+	private boolean waitFor(boolean present, long timeout) throws CardException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		synchronized (lock) {
+			while ((card != null) != present) {
+				long waitInMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (timeout > 0 && waitInMs <= 0) {
+					return false;
+				}
+				try {
+					lock.wait(timeout > 0 ? waitInMs : 0);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw failure(Errors.SCARD_E_TIMEOUT);
+				}
+			}
+			return true;
+		}
+	}
+
+	private static CardException failure(int code) {
+		return new Smartcardio.JnaPCSCException(code, Errors.name(code));
+	}
+
+	/**
+	 * A connection to the card which was on the terminal when connecting
+	 */
+	private class SimulatedCard extends Card {
+
+		private final Uid uid;
+		private final long insertion;
+		private final String protocol;
+		private final SimulatedChannel channel = new SimulatedChannel(this);
+
+		private volatile boolean connected = true;
+
+		SimulatedCard(Uid uid, long insertion, String protocol) {
+			this.uid = uid;
+			this.insertion = insertion;
+			this.protocol = protocol;
+		}
+
+		@Override
+		public ATR getATR() {
+			return ATR;
+		}
+
+		@Override
+		public String getProtocol() {
+			return protocol;
+		}
+
+		@Override
+		public CardChannel getBasicChannel() {
+			return channel;
+		}
+
+		@Override
+		public CardChannel openLogicalChannel() throws CardException {
+			throw new CardException("Logical channels are not supported");
+		}
+
+		@Override
+		public void beginExclusive() {
+		}
+
+		@Override
+		public void endExclusive() {
+		}
+
+		@Override
+		public byte[] transmitControlCommand(int controlCode, byte[] command) throws CardException {
+			return transmit(command);
+		}
+
+		@Override
+		public void disconnect(boolean reset) {
+			connected = false;
+		}
+
+		/**
+		 * Answer a command like the terminal would, after the latency of the simulation. The READ command returns the
+		 * uid, any other command simply succeeds
+		 */
+		byte[] transmit(byte[] command) throws CardException {
+			if (!connected) {
+				throw failure(Errors.SCARD_E_INVALID_HANDLE);
+			}
+			if (simulation.nextHang()) {
+				// Like a native call, a hang does not care about interrupts
+				Uninterruptibles.sleepUninterruptibly(simulation.getHangInMs(), TimeUnit.MILLISECONDS);
+			}
+			long latency = latencyInNanos;
+			if (latency >= 0) {
+				Uninterruptibles.sleepUninterruptibly(latency, TimeUnit.NANOSECONDS);
+			}
+			else {
+				Uninterruptibles.sleepUninterruptibly(simulation.nextApduLatencyInMs(), TimeUnit.MILLISECONDS);
+			}
+			Integer injected = injectedFailures.poll();
+			int failure = injected != null ? injected : simulation.nextFailure();
+			if (failure != Errors.SCARD_S_SUCCESS) {
+				throw failure(failure);
+			}
+			synchronized (lock) {
+				if (card == null || insertions != insertion) {
+					throw failure(Errors.SCARD_W_REMOVED_CARD);
+				}
+				if (!isRead(command)) {
+					return SUCCESS.clone();
+				}
+				readInsertion = insertion;
+				lock.notifyAll();
+			}
+			byte[] response = new byte[uid.length() + SUCCESS.length];
+			for (int i = 0; i < uid.length(); i++) {
+				response[i] = (byte) uid.byteAt(i);
+			}
+			System.arraycopy(SUCCESS, 0, response, uid.length(), SUCCESS.length);
+			return response;
+		}
+
+		private boolean isRead(byte[] command) {
+			byte[] read = Commands.READ.getBytes();
+			return command.length >= 2 && command[0] == read[0] && command[1] == read[1];
+		}
+	}
+
+	/**
+	 * The basic channel of a simulated card
+	 */
+	private static class SimulatedChannel extends CardChannel {
+
+		private final SimulatedCard card;
+
+		SimulatedChannel(SimulatedCard card) {
+			this.card = card;
+		}
+
+		@Override
+		public Card getCard() {
+			return card;
+		}
+
+		@Override
+		public int getChannelNumber() {
+			return 0;
+		}
+
+		@Override
+		public ResponseAPDU transmit(CommandAPDU command) throws CardException {
+			return new ResponseAPDU(card.transmit(command.getBytes()));
+		}
+
+		@Override
+		public int transmit(ByteBuffer command, ByteBuffer response) throws CardException {
+			byte[] bytes = new byte[command.remaining()];
+			command.get(bytes);
+			byte[] answer = card.transmit(bytes);
+			response.put(answer);
+			return answer.length;
+		}
+
+		@Override
+		public void close() throws CardException {
+			throw new IllegalStateException("The basic channel cannot be closed");
+		}
+	}
+}
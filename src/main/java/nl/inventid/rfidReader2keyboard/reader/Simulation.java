@@ -0,0 +1,209 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * The settings of simulated terminals, which are used instead of PC/SC when a Reader is configured with a simulation.
+ * Cards are tapped on every terminal at random, at the given rate, and each command sent to a card takes the given
+ * latency and fails or hangs with the given probability. The terminals can also be scripted, by inserting and
+ * removing cards on them (set the rate to 0 to only script them).
+ */
+@ToString(exclude = { "changeLock", "changes", "terminals", "cards", "tappers" })
+public class Simulation {
+
+	static final String TERMINAL_NAME = "Simulated ACS ACR122U PICC Interface";
+
+	@Getter
+	@Setter
+	private int terminalCount = 1;
+
+	// The names of the terminals, instead of generated names
+	@Getter
+	@Setter
+	private List<String> terminalNames;
+
+	// Per terminal, taps are spread at random (as a Poisson process)
+	@Getter
+	@Setter
+	private double tapsPerSecond = 2;
+
+	@Getter
+	@Setter
+	private long presenceInMs = 200;
+
+	// The amount of distinct cards which are tapped
+	@Getter
+	@Setter
+	private int cardCount = 1000;
+
+	@Getter
+	@Setter
+	private long apduLatencyInMs = 5;
+
+	@Getter
+	@Setter
+	private long apduJitterInMs = 5;
+
+	// The probability that a command fails with one of the failure codes
+	@Getter
+	@Setter
+	private double failureRate = 0;
+
+	@Getter
+	@Setter
+	private int[] failureCodes = new int[] { Errors.SCARD_E_NOT_TRANSACTED, Errors.SCARD_W_REMOVED_CARD,
+			Errors.SCARD_W_UNRESPONSIVE_CARD, Errors.SCARD_F_COMM_ERROR, Errors.SCARD_E_READER_UNAVAILABLE };
+
+	// The probability that a command hangs, which ignores interrupts like a native call would
+	@Getter
+	@Setter
+	private double hangRate = 0;
+
+	@Getter
+	@Setter
+	private long hangInMs = 5000;
+
+	// Whether the scans are really typed, instead of only compiled into key events
+	@Getter
+	@Setter
+	private boolean typing;
+
+	@Getter
+	@Setter
+	private long seed = 42;
+
+	private final Object[] changeLock = new Object[0];
+	private long changes;
+	private List<SimulatedTerminal> terminals;
+	private List<Uid> cards;
+	private final List<Thread> tappers = new ArrayList<>();
+
+	/**
+	 * @return the simulated terminals, which are created (and start being tapped) on the first call
+	 */
+	public synchronized List<SimulatedTerminal> getTerminals() {
+		if (terminals == null) {
+			Random random = new Random(seed);
+			cards = new ArrayList<>(cardCount);
+			for (int i = 0; i < cardCount; i++) {
+				byte[] uid = new byte[7];
+				random.nextBytes(uid);
+				cards.add(Uid.of(uid));
+			}
+			List<SimulatedTerminal> created = new ArrayList<>(terminalCount);
+			if (terminalNames != null) {
+				terminalNames.forEach(name -> created.add(new SimulatedTerminal(name, this)));
+			}
+			else {
+				for (int i = 0; i < terminalCount; i++) {
+					created.add(new SimulatedTerminal(String.format("%s %02d", TERMINAL_NAME, i), this));
+				}
+			}
+			terminals = Collections.unmodifiableList(created);
+			if (tapsPerSecond > 0) {
+				terminals.forEach(this::startTapping);
+			}
+		}
+		return terminals;
+	}
+
+	/**
+	 * Stop tapping cards on the terminals, and forget them, so the next reader gets fresh terminals which are tapped
+	 * again
+	 */
+	public synchronized void stop() {
+		tappers.forEach(Thread::interrupt);
+		tappers.clear();
+		terminals = null;
+	}
+
+	/**
+	 * A card was inserted in or removed from one of the terminals
+	 */
+	void changed() {
+		synchronized (changeLock) {
+			changes++;
+			changeLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Wait for a card to be inserted or removed
+	 *
+	 * @param seen        the amount of changes seen so far
+	 * @param timeoutInMs the maximum time to wait, 0 to wait forever
+	 * @return the amount of changes so far, which equals seen if nothing changed within the timeout
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	long awaitChange(long seen, long timeoutInMs) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+		synchronized (changeLock) {
+			while (changes == seen) {
+				long waitInMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (timeoutInMs > 0 && waitInMs <= 0) {
+					break;
+				}
+				changeLock.wait(timeoutInMs > 0 ? waitInMs : 0);
+			}
+			return changes;
+		}
+	}
+
+	/**
+	 * @return the time a command to a card takes
+	 */
+	long nextApduLatencyInMs() {
+		return apduLatencyInMs + (apduJitterInMs > 0 ? ThreadLocalRandom.current().nextLong(apduJitterInMs + 1) : 0);
+	}
+
+	/**
+	 * @return the PC/SC code a command fails with, or SCARD_S_SUCCESS if it does not fail
+	 */
+	int nextFailure() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (failureRate <= 0 || failureCodes.length == 0 || random.nextDouble() >= failureRate) {
+			return Errors.SCARD_S_SUCCESS;
+		}
+		return failureCodes[random.nextInt(failureCodes.length)];
+	}
+
+	/**
+	 * @return true if a command should hang
+	 */
+	boolean nextHang() {
+		return hangRate > 0 && ThreadLocalRandom.current().nextDouble() < hangRate;
+	}
+
+	private void startTapping(SimulatedTerminal terminal) {
+		Thread tapper = new Thread(() -> tap(terminal), "simulated-taps-" + terminal.getName());
+		tapper.setDaemon(true);
+		tapper.start();
+		tappers.add(tapper);
+	}
+
+	private void tap(SimulatedTerminal terminal) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				// Exponentially distributed time between taps, in microseconds to allow very high rates
+				long waitInUs = (long) (-Math.log(1 - random.nextDouble()) * 1_000_000 / tapsPerSecond);
+				TimeUnit.MICROSECONDS.sleep(waitInUs);
+				terminal.insert(cards.get(random.nextInt(cards.size())));
+				TimeUnit.MILLISECONDS.sleep(presenceInMs);
+				terminal.remove();
+			}
+		}
+		catch (InterruptedException e) {
+			// Stopped
+		}
+	}
+}
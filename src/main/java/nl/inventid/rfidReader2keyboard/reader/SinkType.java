@@ -0,0 +1,27 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * Where the scans of a terminal go
+ */
+public enum SinkType {
+	/**
+	 * Typed, as if on a keyboard
+	 */
+	KEYBOARD,
+	/**
+	 * Put on the clipboard and pasted, which is a lot faster than typing each key
+	 */
+	CLIPBOARD,
+	/**
+	 * Written to the standard output as lines
+	 */
+	STDOUT,
+	/**
+	 * Written as lines to every client of a TCP server on localhost
+	 */
+	SOCKET,
+	/**
+	 * Written as lines to a named pipe (or a file)
+	 */
+	PIPE,
+}
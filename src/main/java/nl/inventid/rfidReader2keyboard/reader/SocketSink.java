@@ -0,0 +1,134 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pushes each scan as a line to every client connected to a TCP server on localhost. Clients which connect later only
+ * receive the scans from then on, and clients which disconnect are forgotten. Each client is written to by a thread of
+ * its own, so a client which stops reading never holds up the output. A client which falls too far behind is
+ * disconnected, so it notices it missed scans. A scan counts as dropped when no client received it.
+ */
+class SocketSink extends LineSink {
+
+	// The amount of scans a client may fall behind before it is disconnected
+	private static final int CLIENT_BUFFER = 256;
+
+	private final ServerSocket server;
+	private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param port the port to listen on, on localhost only
+	 * @throws IOException if the port could not be opened
+	 */
+	SocketSink(int port) throws IOException {
+		this.server = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(this::accept, "scan-sink-socket");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		System.out.println("Sending scans to clients of " + server.getLocalSocketAddress());
+	}
+
+	@Override
+	protected boolean write(byte[] line) {
+		boolean queued = false;
+		for (Client client : clients) {
+			if (client.lines.offer(line)) {
+				queued = true;
+			}
+			else {
+				System.err.println("Scan client " + client.socket.getRemoteSocketAddress() + " does not keep up");
+				disconnect(client);
+			}
+		}
+		if (!queued) {
+			System.err.println("No scan client on " + server.getLocalSocketAddress() + ", dropping a scan");
+		}
+		return queued;
+	}
+
+	@Override
+	public void close() {
+		try {
+			server.close();
+		}
+		catch (IOException e) {
+			// Closing anyway
+		}
+		clients.forEach(this::disconnect);
+	}
+
+	private void accept() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				socket.shutdownInput();
+				Client client = new Client(socket);
+				clients.add(client);
+				client.writer.start();
+				System.out.println("Scan client " + socket.getRemoteSocketAddress() + " connected");
+			}
+			catch (IOException e) {
+				if (!server.isClosed()) {
+					System.err.println("Could not accept a scan client");
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private void disconnect(Client client) {
+		clients.remove(client);
+		try {
+			// Also wakes up its writer, when it is stuck writing
+			client.socket.close();
+		}
+		catch (IOException e) {
+			// Gone already
+		}
+		client.writer.interrupt();
+	}
+
+	/**
+	 * A connected client, with the lines waiting to be written to it
+	 */
+	private class Client {
+
+		private final Socket socket;
+		private final BlockingQueue<byte[]> lines = new ArrayBlockingQueue<>(CLIENT_BUFFER);
+		private final Thread writer;
+
+		Client(Socket socket) {
+			this.socket = socket;
+			this.writer = new Thread(this::writeLines, "scan-sink-client-" + socket.getPort());
+			writer.setDaemon(true);
+		}
+
+		private void writeLines() {
+			try {
+				OutputStream out = socket.getOutputStream();
+				while (!socket.isClosed()) {
+					out.write(lines.take());
+					out.flush();
+				}
+			}
+			catch (IOException e) {
+				if (!socket.isClosed()) {
+					System.out.println("Scan client " + socket.getRemoteSocketAddress() + " disconnected");
+				}
+			}
+			catch (InterruptedException e) {
+				// Disconnected
+			}
+			disconnect(this);
+		}
+	}
+}
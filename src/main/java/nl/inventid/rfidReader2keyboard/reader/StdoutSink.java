@@ -0,0 +1,28 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes each scan as a line to the standard output. This writes to the actual standard output, even when System.out
+ * is moved elsewhere, so the log can be moved to the standard error and the standard output only holds scans.
+ */
+class StdoutSink extends LineSink {
+
+	private final OutputStream out = new FileOutputStream(FileDescriptor.out);
+
+	@Override
+	protected boolean write(byte[] line) {
+		try {
+			out.write(line);
+			out.flush();
+			return true;
+		}
+		catch (IOException e) {
+			System.err.println("Could not write a scan to the standard output");
+			return false;
+		}
+	}
+}
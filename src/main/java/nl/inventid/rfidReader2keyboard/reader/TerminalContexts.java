@@ -0,0 +1,216 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+import javax.smartcardio.TerminalFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Hands out a PC/SC context (a CardTerminals) to the threads which talk to the terminals. pcsc-lite allows a context
+ * to be used by one thread at a time and holds it locked during SCardGetStatusChange, so with a shared context the
+ * reads of all terminals would queue behind the inventory waiting for changes, and behind each other. Now the
+ * inventory, the detection loop of every pipeline and every bulkhead worker bind a context of their own for as long
+ * as they run, and release it when they stop. Any other thread only gets a context for a single enumeration. All
+ * contexts which are still bound are released on close.
+ */
+class TerminalContexts {
+
+	private final TerminalFactory factory;
+	private final Optional<TraceWriter> trace;
+	// The last known presence of a card per terminal, shared by the recordings of all contexts
+	private final Map<String, Boolean> cardPresent = new ConcurrentHashMap<>();
+	private final Set<Context> bound = ConcurrentHashMap.newKeySet();
+	private final ThreadLocal<Context> context = new ThreadLocal<>();
+
+	private volatile boolean closed;
+
+	/**
+	 * @param factory the factory creating the contexts
+	 * @param trace   where to record everything which happens on the terminals, if recording
+	 */
+	TerminalContexts(TerminalFactory factory, Optional<TraceWriter> trace) {
+		this.factory = factory;
+		this.trace = trace;
+	}
+
+	/**
+	 * Give the calling thread a context of its own, until it calls release()
+	 */
+	void bind() {
+		if (!closed && context.get() == null) {
+			Context opened = open();
+			context.set(opened);
+			bound.add(opened);
+			if (closed) {
+				// Closed in the meantime
+				release();
+			}
+		}
+	}
+
+	/**
+	 * Release the context of the calling thread, if it has one
+	 */
+	void release() {
+		Context released = context.get();
+		if (released != null) {
+			context.remove();
+			// Unless close() released it already
+			if (bound.remove(released)) {
+				released.close();
+			}
+		}
+	}
+
+	/**
+	 * @return the context of the calling thread, which must have bound one
+	 */
+	CardTerminals forCurrentThread() {
+		Context current = context.get();
+		if (current == null) {
+			throw new IllegalStateException(Thread.currentThread().getName() + " has no PC/SC context");
+		}
+		return current.terminals;
+	}
+
+	/**
+	 * Enumerate the attached terminals in the context of the calling thread. A thread without a context of its own
+	 * uses a context for just this call
+	 *
+	 * @return the names of the attached terminals
+	 * @throws CardException if the terminals could not be enumerated
+	 */
+	List<String> list() throws CardException {
+		Context current = context.get();
+		Context used = current != null ? current : open();
+		try {
+			return used.terminals.list().stream().map(CardTerminal::getName).collect(Collectors.toList());
+		}
+		finally {
+			if (used != current) {
+				used.close();
+			}
+		}
+	}
+
+	/**
+	 * @param name the name of a terminal
+	 * @return the terminal, which is used through the context of whichever thread calls it
+	 */
+	CardTerminal terminal(String name) {
+		return new PerThreadTerminal(name);
+	}
+
+	/**
+	 * Release all contexts which are still bound, e.g. to a worker which hangs. Any call still waiting on one of them
+	 * returns with an error
+	 */
+	void close() {
+		closed = true;
+		for (Context released : bound) {
+			if (bound.remove(released)) {
+				released.close();
+			}
+		}
+	}
+
+	private Context open() {
+		CardTerminals terminals = factory.terminals();
+		return new Context(terminals,
+				trace.isPresent() ? new RecordingTerminals(terminals, trace.get(), cardPresent) : terminals);
+	}
+
+	/**
+	 * A PC/SC context, with the terminals resolved in it. A PC/SC terminal is only a name within its context, so it
+	 * stays valid when the terminal is replugged
+	 */
+	private static class Context {
+
+		private final CardTerminals opened;
+		private final CardTerminals terminals;
+		private final Map<String, CardTerminal> resolved = new HashMap<>();
+
+		Context(CardTerminals opened, CardTerminals terminals) {
+			this.opened = opened;
+			this.terminals = terminals;
+		}
+
+		void close() {
+			if (opened instanceof AutoCloseable) {
+				try {
+					((AutoCloseable) opened).close();
+				}
+				catch (Exception e) {
+					// Released anyway when the service is gone
+				}
+			}
+		}
+	}
+
+	/**
+	 * A terminal which does every call through the context of the calling thread
+	 */
+	private class PerThreadTerminal extends CardTerminal {
+
+		private final String name;
+
+		PerThreadTerminal(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Card connect(String protocol) throws CardException {
+			return resolve().connect(protocol);
+		}
+
+		@Override
+		public boolean isCardPresent() throws CardException {
+			return resolve().isCardPresent();
+		}
+
+		@Override
+		public boolean waitForCardPresent(long timeout) throws CardException {
+			return resolve().waitForCardPresent(timeout);
+		}
+
+		@Override
+		public boolean waitForCardAbsent(long timeout) throws CardException {
+			return resolve().waitForCardAbsent(timeout);
+		}
+
+		private CardTerminal resolve() throws CardException {
+			Context current = context.get();
+			if (current == null) {
+				throw new CardException(Thread.currentThread().getName() + " has no PC/SC context");
+			}
+			CardTerminal terminal = current.resolved.get(name);
+			if (terminal == null) {
+				terminal = current.terminals.getTerminal(name);
+				if (terminal == null) {
+					throw new CardException("Terminal " + name + " is not attached");
+				}
+				current.resolved.put(name, terminal);
+			}
+			return terminal;
+		}
+
+		@Override
+		public String toString() {
+			return "PC/SC terminal " + name;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * The health of a terminal, as a circuit breaker on reconnecting to it
+ */
+public enum TerminalHealth {
+	/**
+	 * The terminal responds, nothing needs to be done
+	 */
+	HEALTHY,
+	/**
+	 * The terminal keeps failing, it is reconnected at the next health check
+	 */
+	DEGRADED,
+	/**
+	 * Reconnecting did not help, the next attempt waits for a backoff which doubles after each failed attempt
+	 */
+	OPEN,
+	/**
+	 * The backoff passed and the terminal is being reconnected. It is healthy again if it then responds
+	 */
+	HALF_OPEN,
+}
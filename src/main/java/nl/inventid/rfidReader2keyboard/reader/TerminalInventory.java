@@ -0,0 +1,222 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a cached list of the attached terminals, so the terminals are not enumerated over and over, and tells its
+ * listeners when a terminal is attached or detached. Changes are detected with `CardTerminals.waitForChange`, which
+ * (using SCardGetStatusChange on the PnP notification pseudo reader) wakes up as soon as a terminal is plugged in or
+ * out, and also on card changes. The terminals are only enumerated after such a wakeup. Wakeups which only concern
+ * cards on known terminals are skipped, so a tap does not cause an enumeration. Since a terminal may be plugged in
+ * during such a wakeup, the terminals are enumerated once when the next wait times out. Since the notification is
+ * broken on some platforms, the inventory falls back to enumerating the terminals periodically when the wait keeps
+ * failing or keeps returning immediately. The inventory waits for changes in a PC/SC context of its own, so the
+ * pipelines never wait for it. The terminals it hands out do every call through the context of the calling thread.
+ * Enumerating on another thread, e.g. during a health check, uses a context for just that enumeration.
+ */
+class TerminalInventory {
+
+	static final int WAIT_FOR_CHANGE_TIMEOUT_IN_MS = 1000;
+	static final int POLL_INTERVAL_IN_MS = 500;
+	private static final int MAX_WAIT_FAILURES = 10;
+	private static final int MAX_SPURIOUS_WAKEUPS = 50;
+	private static final int SPURIOUS_WAKEUP_IN_MS = 10;
+
+	/**
+	 * Is told about terminals being attached and detached. Called on the thread which enumerated the terminals,
+	 * outside the lock of the inventory
+	 */
+	interface Listener {
+
+		void attached(CardTerminal terminal);
+
+		void detached(String terminalName);
+	}
+
+	private final TerminalContexts contexts;
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+	private final Thread watcher;
+
+	private volatile Map<String, CardTerminal> current = Collections.emptyMap();
+	private volatile long version;
+	private volatile boolean polling;
+	private volatile boolean running = true;
+
+	/**
+	 * Enumerate the terminals once. Watching for changes only starts with start()
+	 *
+	 * @param contexts the contexts through which the terminals are watched and used
+	 */
+	TerminalInventory(TerminalContexts contexts) {
+		this.contexts = contexts;
+		this.watcher = new Thread(this::watch, "terminal-inventory");
+		watcher.setDaemon(true);
+		refresh();
+	}
+
+	void subscribe(Listener listener) {
+		listeners.add(listener);
+	}
+
+	void start() {
+		watcher.start();
+	}
+
+	void shutdown() {
+		running = false;
+		watcher.interrupt();
+	}
+
+	/**
+	 * @return the attached terminals, as of the last change
+	 */
+	List<CardTerminal> list() {
+		return new ArrayList<>(current.values());
+	}
+
+	/**
+	 * @param terminalName the name of the terminal
+	 * @return the terminal, if it is attached
+	 */
+	Optional<CardTerminal> find(String terminalName) {
+		return Optional.ofNullable(current.get(terminalName));
+	}
+
+	/**
+	 * @return the version of the list of terminals, which increases on every change
+	 */
+	long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Enumerate the terminals now, and tell the listeners about any change
+	 *
+	 * @return true if the terminals changed
+	 */
+	boolean refresh() {
+		List<String> detached;
+		List<CardTerminal> attached;
+		synchronized (this) {
+			Map<String, CardTerminal> found = new LinkedHashMap<>();
+			try {
+				contexts.list().forEach(name -> found.put(name, contexts.terminal(name)));
+			}
+			catch (CardException | RuntimeException e) {
+				// No terminals at all (SCARD_E_NO_READERS_AVAILABLE) or the service is gone, either way there are none
+			}
+			Map<String, CardTerminal> previous = current;
+			if (found.keySet().equals(previous.keySet())) {
+				return false;
+			}
+			current = Collections.unmodifiableMap(found);
+			version++;
+			detached = previous.keySet().stream()
+					.filter(name -> !found.containsKey(name))
+					.collect(Collectors.toList());
+			attached = found.values().stream()
+					.filter(terminal -> !previous.containsKey(terminal.getName()))
+					.collect(Collectors.toList());
+		}
+		// Outside the lock, since the listeners take the locks of the pipelines
+		detached.forEach(name -> listeners.forEach(listener -> listener.detached(name)));
+		attached.forEach(terminal -> listeners.forEach(listener -> listener.attached(terminal)));
+		return true;
+	}
+
+	/**
+	 * @return true if the last wakeup only concerned cards on known terminals
+	 */
+	private boolean onlyCardsChanged(CardTerminals terminals) throws CardException {
+		List<CardTerminal> changed = new ArrayList<>(terminals.list(CardTerminals.State.CARD_INSERTION));
+		changed.addAll(terminals.list(CardTerminals.State.CARD_REMOVAL));
+		Map<String, CardTerminal> known = current;
+		return !changed.isEmpty() && changed.stream().allMatch(terminal -> known.containsKey(terminal.getName()));
+	}
+
+	private void watch() {
+		contexts.bind();
+		try {
+			watchInContext();
+		}
+		finally {
+			contexts.release();
+		}
+	}
+
+	private void watchInContext() {
+		int failures = 0;
+		int spuriousWakeups = 0;
+		boolean skippedCardChanges = false;
+		while (running) {
+			try {
+				if (polling) {
+					Thread.sleep(POLL_INTERVAL_IN_MS);
+					refresh();
+					continue;
+				}
+				long start = System.nanoTime();
+				CardTerminals terminals = contexts.forCurrentThread();
+				if (!terminals.waitForChange(WAIT_FOR_CHANGE_TIMEOUT_IN_MS)) {
+					failures = 0;
+					if (skippedCardChanges) {
+						// Catch up on a terminal which was plugged in along with a card change
+						skippedCardChanges = false;
+						refresh();
+					}
+					continue;
+				}
+				failures = 0;
+				boolean onlyCards = onlyCardsChanged(terminals);
+				skippedCardChanges |= onlyCards;
+				boolean changed = !onlyCards && refresh();
+				long waitedInMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				if (changed || waitedInMs >= SPURIOUS_WAKEUP_IN_MS) {
+					spuriousWakeups = 0;
+				}
+				else if (++spuriousWakeups >= MAX_SPURIOUS_WAKEUPS) {
+					fallBackToPolling("terminal change notification keeps returning immediately");
+				}
+			}
+			catch (CardException | RuntimeException e) {
+				// Also thrown while there are no terminals at all, so enumerate to notice the last one leaving
+				refresh();
+				if (++failures >= MAX_WAIT_FAILURES) {
+					fallBackToPolling("terminal change notification keeps failing (" + e.getMessage() + ")");
+				}
+				else {
+					sleepQuietly();
+				}
+			}
+			catch (InterruptedException e) {
+				// Stopped, or merely woken up
+			}
+		}
+	}
+
+	private void fallBackToPolling(String reason) {
+		System.err.println("Falling back to polling for terminals every " + POLL_INTERVAL_IN_MS + "ms: " + reason);
+		polling = true;
+	}
+
+	private static void sleepQuietly() {
+		try {
+			Thread.sleep(POLL_INTERVAL_IN_MS);
+		}
+		catch (InterruptedException e) {
+			// Stopped, the loop checks for that
+		}
+	}
+}
@@ -0,0 +1,707 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CommandAPDU;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import lombok.Getter;
+
+/**
+ * The read pipeline of a single terminal. Every attached terminal gets its own pipeline, with its own detection loop,
+ * bulkhead, debouncing state and reconnection logic, so terminals never wait on each other.
+ */
+class TerminalPipeline {
+
+	private static final int STATUS_CHANGE_TIMEOUT_IN_MS = 250;
+	private static final int MAX_SPURIOUS_WAKEUPS = 50;
+	private static final int MAX_STATUS_CHANGE_FAILURES = 10;
+	private static final int STATUS_CHANGE_HANG_IN_MS = 10 * STATUS_CHANGE_TIMEOUT_IN_MS;
+	private static final int READ_TIMEOUT_IN_MS = 150;
+	private static final int BULKHEAD_WORKERS = 2;
+	private static final int MAX_HUNG_WORKERS = 10;
+	// Only probe the terminal when it did not respond for this long, which should not happen when (event) polling
+	private static final int PROBE_AFTER_SILENCE_IN_MS = 2000;
+	// How long to back off when all workers are busy, doubling while they stay busy
+	private static final int MIN_SATURATED_BACKOFF_IN_MS = READ_TIMEOUT_IN_MS;
+	private static final int MAX_SATURATED_BACKOFF_IN_MS = 2000;
+
+	private final ScheduledThreadPoolExecutor executorService = new ScheduledThreadPoolExecutor(2);
+	private final Object[] synchronizer = new Object[0];
+
+	private final Reader reader;
+	@Getter
+	private final String usedCardTerminalName;
+	private final boolean shouldBuzz;
+	private final Bulkhead bulkhead;
+	private final Deduplicator deduplicator;
+	private final AdaptivePollInterval pollInterval;
+	private final HealthMonitor health;
+	private final ScanMetrics metrics;
+	private final EventCounters counters;
+
+	// The name of the terminal which is (or was last) used, which differs from the name of the pipeline when a terminal
+	// is replaced by a similar one
+	@Getter
+	private volatile String terminalName;
+	private volatile CardTerminal terminal;
+	private volatile CardSession session;
+	private volatile DetectionMode detectionMode;
+	private volatile Instant lastStatusChangeWakeup = Instant.now();
+	// Zero unless the last read found all workers of the bulkhead busy
+	private volatile long saturatedBackoffInMs;
+	// The next poll, when polling
+	private ScheduledFuture<?> nextPoll;
+	@Getter
+	private int i;
+
+	/**
+	 * @param reader               the reader which delivers the scanned cards
+	 * @param usedCardTerminalName the name of the terminal to read from
+	 * @param configuration        the settings of the reader
+	 * @param metrics              where to record the latency of each stage of a scan
+	 * @param counters             where to count the events of this terminal
+	 */
+	TerminalPipeline(Reader reader, String usedCardTerminalName, ReaderConfiguration configuration,
+			ScanMetrics metrics, EventCounters counters) {
+		this.reader = reader;
+		this.metrics = metrics;
+		this.counters = counters;
+		this.usedCardTerminalName = usedCardTerminalName;
+		this.terminalName = usedCardTerminalName;
+		this.shouldBuzz = configuration.isShouldBuzz();
+		this.detectionMode = configuration.getDetectionMode();
+		// Every worker talks to the terminal in a PC/SC context of its own, for as long as it lives
+		this.bulkhead = new Bulkhead("card-reader-" + usedCardTerminalName, BULKHEAD_WORKERS, MAX_HUNG_WORKERS,
+				reader.getContexts()::bind, reader.getContexts()::release);
+		this.deduplicator = new Deduplicator(configuration.getDedupWindowInMs(), configuration.getRecentUidCapacity());
+		this.pollInterval = new AdaptivePollInterval(configuration.getPollFloorInMs(),
+				configuration.getPollCeilingInMs());
+		this.health = new HealthMonitor(state -> {
+			System.out.println("[" + usedCardTerminalName + "] Terminal is now " + state);
+			reader.reportHealth(usedCardTerminalName, state);
+		});
+	}
+
+	void start() {
+		findAndConnectToTerminal();
+		if (detectionMode == DetectionMode.EVENT) {
+			lastStatusChangeWakeup = Instant.now();
+			executorService.execute(this::awaitCards);
+			executorService.scheduleWithFixedDelay(this::watchStatusChangeLoop, 1, 1, TimeUnit.SECONDS);
+		}
+		else {
+			startPolling(1000);
+		}
+		executorService.scheduleWithFixedDelay(this::checkHealth, 1, 1, TimeUnit.SECONDS);
+	}
+
+	void stop() {
+		executorService.shutdownNow();
+		bulkhead.shutdown();
+	}
+
+	/**
+	 * @return a short description of the bulkhead of this pipeline, for logging
+	 */
+	String describeBulkhead() {
+		return bulkhead.getActiveWorkers() + " active, " + bulkhead.getHungWorkers() + " hung, "
+				+ bulkhead.getRetiredWorkers() + " retired";
+	}
+
+	/**
+	 * @return the health of the terminal
+	 */
+	TerminalHealth getHealth() {
+		return health.getHealth();
+	}
+
+	/**
+	 * @return the health of the terminal, for logging
+	 */
+	String describeHealth() {
+		return health.describe();
+	}
+
+	/**
+	 * @return true if the pipeline currently has a terminal
+	 */
+	boolean isAttached() {
+		return terminal != null;
+	}
+
+	/**
+	 * Use the given terminal from now on, since it was just plugged in
+	 *
+	 * @param attached the terminal
+	 */
+	void terminalAttached(CardTerminal attached) {
+		synchronized (synchronizer) {
+			System.out.println("[" + usedCardTerminalName + "] Terminal '" + attached.getName() + "' was plugged in");
+			terminalName = attached.getName();
+			attachTo(attached, true);
+		}
+	}
+
+	/**
+	 * Stop using the terminal, since it was unplugged. Its card session is abandoned, since closing it may hang now
+	 */
+	void terminalDetached() {
+		synchronized (synchronizer) {
+			System.err.println("[" + usedCardTerminalName + "] Terminal '" + terminalName + "' was unplugged");
+			terminal = null;
+			session = null;
+			deduplicator.cardAbsent();
+		}
+	}
+
+	/**
+	 * Find and connect to the terminal of this pipeline, by its name
+	 *
+	 * @return true if the terminal was found
+	 */
+	private boolean findAndConnectToTerminal() {
+		return findAndConnectToTerminal(false);
+	}
+
+	/**
+	 * Find and connect to the terminal of this pipeline, by its name
+	 *
+	 * @param reconfigure whether the terminal needs to be configured again, e.g. because it may have been replugged
+	 * @return true if the terminal was found
+	 */
+	private boolean findAndConnectToTerminal(boolean reconfigure) {
+		try {
+			synchronized (synchronizer) {
+				Optional<CardTerminal> found = reader.getInventory().find(terminalName);
+				if (found.isPresent()) {
+					System.out.println("Attached to '" + terminalName + "'");
+					attachTo(found.get(), reconfigure);
+					return true;
+				}
+				System.err.println("No terminal connected for " + usedCardTerminalName + "!");
+			}
+		}
+		catch (Throwable e) {
+			// Probably no reader found...
+			System.err.println("Unable to connect to RFID reader " + usedCardTerminalName);
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 * Use the given terminal from now on. Any open card session is closed, but the configuration of the terminal is
+	 * kept, unless the terminal was lost in the meantime
+	 */
+	private void attachTo(CardTerminal found, boolean reconfigure) {
+		CardSession previous = session;
+		boolean configured = !reconfigure && terminal != null && previous != null && previous.isReaderConfigured();
+		if (previous != null) {
+			previous.close();
+		}
+		if (reconfigure || terminal == null) {
+			// The terminal may have just been plugged in, so be ready for the first card
+			pollInterval.reset();
+			pollSoon();
+		}
+		terminal = found;
+		session = new CardSession(found, configured, metrics);
+	}
+
+	/**
+	 * Forget the current card session without touching it, since a hung worker may still be using it
+	 */
+	private void abandonSession(CardSession abandoned) {
+		session = new CardSession(terminal, abandoned.isReaderConfigured(), metrics);
+	}
+
+	private void startPolling(long initialDelayInMs) {
+		System.out.println("[" + usedCardTerminalName + "] Polling for cards every " + pollInterval.getFloorInMs()
+				+ "ms, backing off to every " + pollInterval.getCeilingInMs() + "ms when idle");
+		schedulePoll(initialDelayInMs);
+	}
+
+	private synchronized void schedulePoll(long delayInMs) {
+		long dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayInMs);
+		nextPoll = executorService.schedule(() -> poll(dueAt), delayInMs, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Poll right away instead of after the (possibly backed off) interval. Does nothing while a poll is running, since
+	 * it schedules the next one using the interval which was just reset
+	 */
+	private synchronized void pollSoon() {
+		if (nextPoll != null && !executorService.isShutdown() && nextPoll.cancel(false)) {
+			schedulePoll(0);
+		}
+	}
+
+	/**
+	 * Poll once, and schedule the next poll based on the recent activity on the terminal
+	 *
+	 * @param dueAt the System.nanoTime() at which the poll was scheduled to run
+	 */
+	private void poll(long dueAt) {
+		boolean cardPresent = false;
+		try {
+			cardPresent = run(dueAt);
+		}
+		finally {
+			if (!executorService.isShutdown()) {
+				schedulePoll(pollInterval.next(cardPresent));
+			}
+		}
+	}
+
+	/**
+	 * Switch from the status change notifications to polling. Used when the platform turns out to have a broken
+	 * SCardGetStatusChange implementation (see the README)
+	 *
+	 * @param reason why the event driven detection is abandoned
+	 */
+	private synchronized void fallBackToPolling(String reason) {
+		if (detectionMode == DetectionMode.POLL) {
+			return;
+		}
+		System.err.println("[" + usedCardTerminalName + "] Falling back to polling for cards: " + reason);
+		detectionMode = DetectionMode.POLL;
+		startPolling(0);
+	}
+
+	/**
+	 * Wait for cards using the PC/SC status change notification. Only when the terminal reports a card to be present
+	 * an actual read is attempted, so an idle terminal costs (close to) nothing. After a read we wait for the card to
+	 * be removed, which ends its presence.
+	 */
+	private void awaitCards() {
+		System.out.println("[" + usedCardTerminalName + "] Waiting for cards using PC/SC status change notifications");
+		reader.getContexts().bind();
+		try {
+			awaitCardsInContext();
+		}
+		finally {
+			reader.getContexts().release();
+		}
+	}
+
+	private void awaitCardsInContext() {
+		int spuriousWakeups = 0;
+		int failures = 0;
+		while (detectionMode == DetectionMode.EVENT && !Thread.currentThread().isInterrupted()) {
+			lastStatusChangeWakeup = Instant.now();
+			CardTerminal current = terminal;
+			try {
+				if (current == null) {
+					// Detached, the inventory tells us when it is back
+					failures = 0;
+					Thread.sleep(STATUS_CHANGE_TIMEOUT_IN_MS);
+					continue;
+				}
+				boolean cardPresent = current.waitForCardPresent(STATUS_CHANGE_TIMEOUT_IN_MS);
+				long wokeUpAt = System.nanoTime();
+				health.recordSuccess();
+				if (!cardPresent) {
+					// There is no card, so any card we saw is gone, also when its removal was missed
+					cardAbsent();
+					continue;
+				}
+				failures = 0;
+				if (run(wokeUpAt)) {
+					spuriousWakeups = 0;
+					awaitRemoval(current);
+				}
+				else if (saturatedBackoffInMs == 0 && ++spuriousWakeups >= MAX_SPURIOUS_WAKEUPS) {
+					fallBackToPolling("terminal keeps reporting a card which cannot be read");
+				}
+			}
+			catch (CardException e) {
+				String cause = Errors.name(Errors.codeOf(e));
+				counters.increment(ReaderEvent.STATUS_CHANGE_FAILURE);
+				health.recordFailure();
+				if (++failures >= MAX_STATUS_CHANGE_FAILURES) {
+					fallBackToPolling("status change notification keeps failing (" + cause + ")");
+				}
+				else {
+					sleepQuietly(STATUS_CHANGE_TIMEOUT_IN_MS);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Wait until the card is removed, since waiting for a card returns at once while one is present, and would read a
+	 * card left on the terminal over and over again. Stops waiting when the terminal is replaced or the detection is
+	 * abandoned
+	 */
+	private void awaitRemoval(CardTerminal current) throws CardException {
+		while (detectionMode == DetectionMode.EVENT && terminal == current && !Thread.currentThread().isInterrupted()) {
+			lastStatusChangeWakeup = Instant.now();
+			boolean removed = current.waitForCardAbsent(STATUS_CHANGE_TIMEOUT_IN_MS);
+			health.recordSuccess();
+			if (removed) {
+				cardAbsent();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * On some platforms `waitForCardPresent` blocks indefinitely, despite the timeout. In that case the status change
+	 * loop stops waking up, and we switch to polling. The blocked thread exits if it ever returns.
+	 */
+	private void watchStatusChangeLoop() {
+		if (detectionMode != DetectionMode.EVENT) {
+			return;
+		}
+		if (lastStatusChangeWakeup.plus(STATUS_CHANGE_HANG_IN_MS, ChronoUnit.MILLIS).isBefore(Instant.now())) {
+			fallBackToPolling("status change notification did not return within " + STATUS_CHANGE_HANG_IN_MS + "ms");
+		}
+	}
+
+	private static void sleepQuietly(long ms) {
+		try {
+			Thread.sleep(ms);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Do the actual work of the program by looping over it and writing/exceptioning In case you are looking at this
+	 * code and thinking "OMG why not just use the CardTerminal methods instead of catching?": There is a very good
+	 * reason: javax.smartcardio is buggy as fuck, so on some platform the `waitForCardPresent` and `waitForCardAbsent`
+	 * methods will not block, or block indefinitely under some conditions. Especially in combination with sleeping
+	 * code, this is a significant nightmare! Therefore we simply try to read from the card, and handle all exceptions.
+	 * In the exception handling, possibly we will reconnect to a terminal, if that is the best thing to do for
+	 * stability
+	 *
+	 * @param wokeUpAt the System.nanoTime() at which the status change fired, or the poll was due
+	 * @return true if a card uid was read (regardless of it being new)
+	 */
+	private boolean run(long wokeUpAt) {
+		CardSession current = session;
+		if (terminal == null || current == null) {
+			// No terminal connected, the inventory tells us when there is one
+			return false;
+		}
+		try {
+			synchronized (synchronizer) {
+				// Bulkhead feature, ensure we do not fire anything there on the main thread or executorservice so
+				// prevent those of becoming too busy. A worker which hangs is retired and replaced by the bulkhead
+				ReadResult result;
+				long readStartedAt = System.nanoTime();
+
+				// We'll give the card 150ms to respond, or we cancel the request.
+				try {
+					result = bulkhead.call(new CardUuidReader(current), READ_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+				}
+				catch (TimeoutException e) {
+					abandonSession(current);
+					System.err.println("[" + usedCardTerminalName + "] Did not get an card uid in time, cancelled");
+					result = ReadResult.TIMEOUT;
+				}
+				catch (ExecutionException e) {
+					// The read threw something else than a CardException, e.g. since the connection broke halfway
+					abandonSession(current);
+					System.err.println("[" + usedCardTerminalName + "] Could not read the card: " + e.getCause());
+					counters.increment(ReaderEvent.UNKNOWN_ERROR);
+					health.recordFailure();
+					return false;
+				}
+				if (saturatedBackoffInMs != 0) {
+					System.out.println("[" + usedCardTerminalName + "] Bulkhead has a worker available again");
+					saturatedBackoffInMs = 0;
+				}
+
+				switch (result.getOutcome()) {
+					case CARD:
+						metrics.record(ScanStage.POLL_WAKEUP, readStartedAt - wokeUpAt);
+						health.recordSuccess();
+						return handleCard(current, result.getUid());
+					case EMPTY_CODE:
+						counters.increment(ReaderEvent.EMPTY_CODE);
+						System.err.println("Empty code was read");
+						return false;
+					case UNKNOWN_ERROR:
+						System.err.println("Help something uncaught happened! This should not happen!");
+						attemptRecovery(result.toString());
+						return false;
+					case NO_CARD:
+					case REMOVED:
+						health.recordSuccess();
+						deduplicator.cardAbsent();
+						counters.increment(ReaderEvent.of(result.getOutcome()));
+						return false;
+					case READ_FAILURE:
+						// The card did not respond properly, which says nothing about the terminal
+						counters.increment(ReaderEvent.READ_FAILURE);
+						return false;
+					default:
+						// Reader unavailable, failed transaction or timeout. These simply happen, but should not
+						// keep happening
+						health.recordFailure();
+						counters.increment(ReaderEvent.of(result.getOutcome()));
+						return false;
+				}
+			}
+		}
+		catch (RejectedExecutionException e) {
+			backOffWhileSaturated();
+		}
+		catch (InterruptedException e) {
+			// Stopped
+			Thread.currentThread().interrupt();
+		}
+		catch (Exception e) {
+			System.err.println("Help something uncaught happened! This should not happen!");
+			attemptRecovery(e);
+		}
+		catch (Throwable e) {
+			System.err.println("Throwable was thrown!");
+			attemptRecovery(e);
+		}
+		return false;
+	}
+
+	/**
+	 * All workers of the bulkhead are busy, or hung with no replacement allowed. Trying again right away only keeps
+	 * the detection loop spinning, so wait for a while, longer while the workers stay busy, and only log the first time
+	 */
+	private void backOffWhileSaturated() {
+		counters.increment(ReaderEvent.SATURATED);
+		long backoff = saturatedBackoffInMs;
+		if (backoff == 0) {
+			System.err.println("[" + usedCardTerminalName + "] Bulkhead is saturated (" + describeBulkhead()
+					+ "), backing off");
+			backoff = MIN_SATURATED_BACKOFF_IN_MS;
+		}
+		else {
+			backoff = Math.min(2 * backoff, MAX_SATURATED_BACKOFF_IN_MS);
+		}
+		saturatedBackoffInMs = backoff;
+		sleepQuietly(backoff);
+	}
+
+	/**
+	 * Handle a successfully read card uid
+	 *
+	 * @return true, since a card uid was read
+	 */
+	private boolean handleCard(CardSession current, Uid uid) {
+		// We'll check if this is simply a re-read or a re-tap, if it is, we are not going to type this again
+		long start = System.nanoTime();
+		boolean shouldOutput = deduplicator.shouldOutput(uid);
+		metrics.recordSince(ScanStage.DEDUP, start);
+		if (!shouldOutput) {
+			counters.increment(ReaderEvent.DUPLICATE);
+			return true;
+		}
+
+		if (!reader.accepts(uid)) {
+			System.out.println("[" + usedCardTerminalName + "] Rejected card " + uid);
+			counters.increment(ReaderEvent.REJECTED);
+			if (this.shouldBuzz) {
+				buzz(current, Commands.REJECT_BUZZ);
+			}
+			return true;
+		}
+
+		counters.increment(ReaderEvent.SCAN);
+		// Queue the uid to be "typed", we do not wait for the typing to finish
+		start = System.nanoTime();
+		reader.deliver(new ScanEvent(usedCardTerminalName, uid));
+		metrics.recordSince(ScanStage.ENQUEUE, start);
+		System.out.println("[" + usedCardTerminalName + "] This is a new card! " + uid);
+
+		// Buzz! Only after queueing, since it takes a command. Over the same connection, in the bulkhead to allow it
+		// to fail if the card is removed by now!
+		if (this.shouldBuzz) {
+			buzz(current, Commands.ONE_BUZZ);
+		}
+
+		i++;
+
+		System.out.println("[" + usedCardTerminalName + "] ready for next card");
+		System.out.println("[" + usedCardTerminalName + "] Card scan run: " + i);
+		return true;
+	}
+
+	private void attemptRecovery(Throwable e) {
+		e.printStackTrace();
+		attemptRecovery(String.valueOf(e.getMessage()));
+	}
+
+	/**
+	 * Something unexpected happened, the terminal is reconnected at the next health check
+	 */
+	private void attemptRecovery(String cause) {
+		counters.increment(ReaderEvent.UNKNOWN_ERROR);
+		counters.increment(ReaderEvent.RECOVERY);
+		System.out.println(cause);
+		health.markDegraded();
+	}
+
+	private void buzz(CardSession current, CommandAPDU pattern) {
+		try {
+			bulkhead.call(Executors.callable(new SingleBuzz(current, pattern)), READ_TIMEOUT_IN_MS,
+					TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e) {
+			abandonSession(current);
+			System.err.println("Could not buzz in time");
+		}
+		catch (ExecutionException | RejectedExecutionException e) {
+			System.err.println("Could not buzz");
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Reconnect to the terminal when its health says so. When the terminal was silent for a while (which can happen in
+	 * the event driven detection) it is probed with a cheap status query first, so a healthy terminal is never
+	 * re-enumerated. This replaces blindly reconnecting whenever there were no scans for a few seconds
+	 */
+	private void checkHealth() {
+		if (terminal == null) {
+			// Detached, the inventory tells us when it is back
+			return;
+		}
+		if (health.getHealth() == TerminalHealth.HEALTHY && health.isSilentFor(PROBE_AFTER_SILENCE_IN_MS)) {
+			if (probe()) {
+				health.recordSuccess();
+			}
+			else {
+				health.recordFailure();
+			}
+		}
+		if (!health.shouldReconnect()) {
+			return;
+		}
+		System.out.println("[" + usedCardTerminalName + "] Reconnecting, terminal is " + health.describe());
+		counters.increment(ReaderEvent.RECONNECT);
+		// The cached terminals may be stale if the terminal was replugged without us noticing
+		reader.getInventory().refresh();
+		if (findAndConnectToTerminal(true) && probe()) {
+			health.recordSuccess();
+		}
+		else {
+			health.reconnectFailed();
+		}
+	}
+
+	/**
+	 * Ask the terminal whether a card is present, in the bulkhead since even this may hang
+	 *
+	 * @return true if the terminal responded in time
+	 */
+	private boolean probe() {
+		CardSession current = session;
+		if (current == null) {
+			return false;
+		}
+		try {
+			bulkhead.call(current::isCardPresent, READ_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+			return true;
+		}
+		catch (TimeoutException e) {
+			abandonSession(current);
+			return false;
+		}
+		catch (ExecutionException | RejectedExecutionException e) {
+			return false;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * The terminal reported the card was removed, which ends the presence of the card
+	 */
+	private void cardAbsent() {
+		synchronized (synchronizer) {
+			deduplicator.cardAbsent();
+		}
+	}
+
+	/**
+	 * Read the Card UID.
+	 * This is done in a Callable so we can extract it as a future and get the value (or cancel). And due to the
+	 * bulkhead protection strategy, we certainly do not want to do this on the main thread.
+	 */
+	private static class CardUuidReader implements Callable<ReadResult> {
+
+		private final CardSession session;
+
+		public CardUuidReader(CardSession session) {
+			this.session = session;
+		}
+
+		/**
+		 * Get the uid of a card. Failures are returned rather than thrown, so the steady "no card" state costs no
+		 * exceptions
+		 *
+		 * @return the uid of the card (not empty), or why it could not be read
+		 */
+		public ReadResult call() {
+			try {
+				// Only talk to a card if there is one. This status query does not throw if there is none
+				if (!session.isConnected() && !session.isCardPresent()) {
+					return ReadResult.NO_CARD;
+				}
+				// Send data over the (possibly already open) connection and retrieve output
+				return session.readUid();
+			}
+			catch (CardException e) {
+				return ReadResult.failure(Errors.codeOf(e));
+			}
+		}
+	}
+
+	/**
+	 * This simple Runnable class fires a beep pattern over the connection of the card session. In case the card
+	 * disconnected, it will fail silently
+	 */
+	private static class SingleBuzz implements Runnable {
+
+		private final CardSession session;
+		private final CommandAPDU pattern;
+
+		public SingleBuzz(CardSession session, CommandAPDU pattern) {
+			this.session = session;
+			this.pattern = pattern;
+		}
+
+		public void run() {
+			try {
+				// Send a single buzzer event
+				session.transmit(pattern);
+			}
+			catch (Exception e) {
+				// Might well be triggered if the card is removed before this method is called. Not buzzing is not a
+				// very big deal though
+				System.err.println("Could not buzz");
+			}
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * The format of trace files. A trace starts with the MAGIC bytes, followed by records which each start with their
+ * type (a byte), the System.nanoTime() relative to the start of the session (a long) and the id of the terminal (a
+ * short). The rest of a record depends on its type:
+ * <ul>
+ * <li>SESSION: the time in epoch millis at which recording started. Terminal ids restart at each session</li>
+ * <li>TERMINAL: the length (a short) and the UTF-8 bytes of the name of the terminal with this id</li>
+ * <li>CARD_PRESENT and CARD_ABSENT: nothing</li>
+ * <li>APDU: the duration of the command in nanos (a long), followed by the length (a short) and bytes of both the
+ * command and the response</li>
+ * <li>ERROR: the PC/SC code (an int)</li>
+ * <li>TYPED: the length (a byte) and the bytes of the typed uid</li>
+ * </ul>
+ * All values are big endian. A trace is only ever appended to, so a crash loses (at most) the records which were not
+ * flushed yet.
+ */
+final class Trace {
+
+	static final byte[] MAGIC = new byte[] { 'R', 'F', 'I', 'D', 'T', 'R', 'C', '1' };
+
+	static final byte SESSION = 0;
+	static final byte TERMINAL = 1;
+	static final byte CARD_PRESENT = 2;
+	static final byte CARD_ABSENT = 3;
+	static final byte APDU = 4;
+	static final byte ERROR = 5;
+	static final byte TYPED = 6;
+
+	// The id used for records which do not belong to a terminal
+	static final short NO_TERMINAL = -1;
+
+	private Trace() {
+	}
+}
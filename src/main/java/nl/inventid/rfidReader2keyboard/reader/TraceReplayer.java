@@ -0,0 +1,322 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a trace (see {@link Trace}) on simulated terminals, so a Reader configured with the simulation of the
+ * replayer reads the same cards, gets the same errors and sees the same command latencies as the reader which
+ * recorded the trace. The trace is replayed at a multiple of its original speed, or as fast as possible, which
+ * waits for each replayed card to be read before continuing.
+ */
+public class TraceReplayer {
+
+	private static final byte[] READ_HEADER = Arrays.copyOf(Commands.READ.getBytes(), 2);
+	// When replaying as fast as possible, the time to wait for the reader to read a replayed card
+	private static final int READ_TIMEOUT_IN_MS = 1000;
+	// When replaying as fast as possible, the longest time between two records. Longer (idle) times are skipped,
+	// shorter ones are kept so the reader can notice a card leaving before the next one arrives
+	private static final long MAX_GAP_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final Path path;
+	private final double speed;
+	private final Simulation simulation;
+
+	private Thread replay;
+
+	/**
+	 * @param path  the trace
+	 * @param speed the speed of the replay, e.g. 1 for the original speed or 60 to replay an hour in a minute. 0 (or
+	 *              less) replays as fast as possible
+	 * @throws IOException if the trace cannot be read
+	 */
+	public TraceReplayer(Path path, double speed) throws IOException {
+		this.path = path;
+		this.speed = speed;
+		this.simulation = new Simulation();
+		simulation.setTapsPerSecond(0);
+		simulation.setApduLatencyInMs(0);
+		simulation.setApduJitterInMs(0);
+		simulation.setTerminalNames(readTerminalNames(path));
+	}
+
+	/**
+	 * @return the simulation whose terminals replay the trace
+	 */
+	public Simulation getSimulation() {
+		return simulation;
+	}
+
+	/**
+	 * Start replaying from the start of the trace, on a thread of its own. Does nothing when already started
+	 */
+	public synchronized void start() {
+		if (replay != null) {
+			return;
+		}
+		replay = new Thread(this::replay, "trace-replay");
+		replay.setDaemon(true);
+		replay.start();
+	}
+
+	/**
+	 * Stop replaying, so the next start (e.g. of a restarted reader) replays the trace again
+	 */
+	public synchronized void stop() {
+		if (replay != null) {
+			replay.interrupt();
+			replay = null;
+		}
+	}
+
+	private void replay() {
+		System.out.println("Replaying " + path + (speed > 0 ? " at " + speed + "x" : " as fast as possible"));
+		Map<String, SimulatedTerminal> terminals = new HashMap<>();
+		simulation.getTerminals().forEach(terminal -> terminals.put(terminal.getName(), terminal));
+		Map<SimulatedTerminal, Uid> cards = new HashMap<>();
+		Map<Short, String> names = new HashMap<>();
+		long start = System.nanoTime();
+		long offset = 0;
+		long last = 0;
+		int records = 0;
+		int typed = 0;
+		try (TraceInput input = new TraceInput(path)) {
+			while (input.next() && !Thread.currentThread().isInterrupted()) {
+				records++;
+				if (input.type == Trace.SESSION) {
+					// Sessions follow each other, and terminal ids restart
+					names.clear();
+					offset = last;
+					continue;
+				}
+				if (input.type == Trace.TERMINAL) {
+					names.put(input.terminalId, input.name);
+					continue;
+				}
+				long previous = last;
+				last = offset + input.time;
+				waitFor(start, previous, last);
+				SimulatedTerminal terminal = terminals.get(names.get(input.terminalId));
+				if (terminal == null) {
+					continue;
+				}
+				switch (input.type) {
+					case Trace.CARD_ABSENT:
+						cards.remove(terminal);
+						terminal.remove();
+						break;
+					case Trace.APDU:
+						terminal.setLatencyInNanos(speed > 0 ? (long) (input.duration / speed) : 0);
+						Uid uid = uidIn(input.command, input.response);
+						if (uid != null && !uid.equals(cards.get(terminal))) {
+							cards.put(terminal, uid);
+							terminal.insert(uid);
+							if (speed <= 0 && !terminal.awaitRead(READ_TIMEOUT_IN_MS)) {
+								System.err.println("Replayed card " + uid + " was not read in time");
+							}
+						}
+						break;
+					case Trace.ERROR:
+						// No card and removed cards follow from replaying the presence of the cards
+						if (input.code != Errors.SCARD_E_NO_SMARTCARD && input.code != Errors.SCARD_W_REMOVED_CARD) {
+							terminal.injectFailure(input.code);
+						}
+						break;
+					case Trace.TYPED:
+						typed++;
+						break;
+					default:
+						// A card being present is replayed once its uid is read
+						break;
+				}
+			}
+		}
+		catch (IOException e) {
+			System.err.println("Could not replay " + path);
+			e.printStackTrace();
+		}
+		catch (InterruptedException e) {
+			// Stopped
+		}
+		System.out.println("Replayed " + records + " records of " + TimeUnit.NANOSECONDS.toSeconds(last) + "s in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms, the trace typed " + typed + " scans");
+	}
+
+	/**
+	 * Wait until the time of the next record
+	 *
+	 * @param start    the System.nanoTime() at which the replay started
+	 * @param previous the time of the previous record in the trace
+	 * @param time     the time of the next record in the trace
+	 */
+	private void waitFor(long start, long previous, long time) {
+		long deadline = speed > 0 ? start + (long) (time / speed)
+				: System.nanoTime() + Math.min(MAX_GAP_IN_NANOS, time - previous);
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+
+	/**
+	 * @return the uid in the response to a READ command, or null if it is not a successful READ
+	 */
+	private static Uid uidIn(byte[] command, byte[] response) {
+		int length = response.length - 2;
+		if (command.length < 2 || command[0] != READ_HEADER[0] || command[1] != READ_HEADER[1] || length < 1
+				|| length > Uid.MAX_LENGTH || response[length] != (byte) 0x90 || response[length + 1] != 0x00) {
+			return null;
+		}
+		return Uid.of(ByteBuffer.wrap(response), length);
+	}
+
+	private static List<String> readTerminalNames(Path path) throws IOException {
+		Set<String> names = new LinkedHashSet<>();
+		try (TraceInput input = new TraceInput(path)) {
+			while (input.next()) {
+				if (input.type == Trace.TERMINAL) {
+					names.add(input.name);
+				}
+			}
+		}
+		return new ArrayList<>(names);
+	}
+
+	/**
+	 * Reads the records of a trace one by one. The fields hold the last read record
+	 */
+	private static class TraceInput implements Closeable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+
+		private byte type;
+		private long time;
+		private short terminalId;
+		private String name;
+		private long duration;
+		private byte[] command;
+		private byte[] response;
+		private int code;
+
+		TraceInput(Path path) throws IOException {
+			this.channel = FileChannel.open(path, StandardOpenOption.READ);
+			buffer.flip();
+			byte[] magic = new byte[Trace.MAGIC.length];
+			if (!fill(magic.length)) {
+				throw new EOFException("Empty trace " + path);
+			}
+			buffer.get(magic);
+			if (!Arrays.equals(magic, Trace.MAGIC)) {
+				throw new IOException(path + " is not a trace");
+			}
+		}
+
+		/**
+		 * @return true if a record was read, false at the end of the trace (or at a record which was cut off)
+		 */
+		boolean next() throws IOException {
+			if (!fill(1 + 8 + 2)) {
+				return false;
+			}
+			type = buffer.get();
+			time = buffer.getLong();
+			terminalId = buffer.getShort();
+			switch (type) {
+				case Trace.SESSION:
+					return skip(8);
+				case Trace.TERMINAL:
+					if (!fill(2)) {
+						return false;
+					}
+					byte[] bytes = bytes(buffer.getShort());
+					name = bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+					return name != null;
+				case Trace.APDU:
+					if (!fill(8 + 2)) {
+						return false;
+					}
+					duration = buffer.getLong();
+					command = bytes(buffer.getShort());
+					if (command == null || !fill(2)) {
+						return false;
+					}
+					response = bytes(buffer.getShort());
+					return response != null;
+				case Trace.ERROR:
+					if (!fill(4)) {
+						return false;
+					}
+					code = buffer.getInt();
+					return true;
+				case Trace.TYPED:
+					return fill(1) && skip(buffer.get() & 0xFF);
+				case Trace.CARD_PRESENT:
+				case Trace.CARD_ABSENT:
+					return true;
+				default:
+					throw new IOException("Unknown record type " + type);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		private byte[] bytes(int length) throws IOException {
+			if (!fill(length)) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return bytes;
+		}
+
+		private boolean skip(int length) throws IOException {
+			if (!fill(length)) {
+				return false;
+			}
+			buffer.position(buffer.position() + length);
+			return true;
+		}
+
+		/**
+		 * Make sure the buffer holds at least the given amount of bytes
+		 *
+		 * @return false if the trace ends before that
+		 */
+		private boolean fill(int length) throws IOException {
+			if (buffer.remaining() >= length) {
+				return true;
+			}
+			buffer.compact();
+			try {
+				while (buffer.position() < length) {
+					if (channel.read(buffer) < 0) {
+						return false;
+					}
+				}
+			}
+			finally {
+				buffer.flip();
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Appends records to a trace file (see {@link Trace} for the format). Records are collected in a buffer which is
+ * written when it is full, and at least every FLUSH_INTERVAL_IN_MS, so recording costs (close to) no I/O per record.
+ * Safe to use from multiple threads.
+ */
+class TraceWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int FLUSH_INTERVAL_IN_MS = 1000;
+	// A record never exceeds the header plus two APDUs of at most 64K each, but in practice they are tiny
+	private static final int MAX_APDU_LENGTH = 1024;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private final Map<String, Short> terminalIds = new HashMap<>();
+	private final long start = System.nanoTime();
+	private final Thread flusher;
+
+	private volatile boolean open = true;
+
+	/**
+	 * Open a trace for appending, and start a new session in it
+	 *
+	 * @param path the trace file, which is created if it does not exist
+	 * @throws IOException if the file cannot be opened
+	 */
+	TraceWriter(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		synchronized (this) {
+			if (channel.size() == 0) {
+				buffer.put(Trace.MAGIC);
+			}
+			header(Trace.SESSION, Trace.NO_TERMINAL, 8).putLong(System.currentTimeMillis());
+		}
+		this.flusher = new Thread(this::flushPeriodically, "trace-writer");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	synchronized void cardPresent(String terminalName) {
+		if (!open) {
+			return;
+		}
+		header(Trace.CARD_PRESENT, terminalId(terminalName), 0);
+	}
+
+	synchronized void cardAbsent(String terminalName) {
+		if (!open) {
+			return;
+		}
+		header(Trace.CARD_ABSENT, terminalId(terminalName), 0);
+	}
+
+	/**
+	 * @param terminalName    the terminal the command was sent to
+	 * @param durationInNanos how long the command took
+	 * @param command         the command
+	 * @param response        the response
+	 */
+	synchronized void apdu(String terminalName, long durationInNanos, byte[] command, byte[] response) {
+		if (!open) {
+			return;
+		}
+		int commandLength = Math.min(command.length, MAX_APDU_LENGTH);
+		int responseLength = Math.min(response.length, MAX_APDU_LENGTH);
+		header(Trace.APDU, terminalId(terminalName), 8 + 2 + commandLength + 2 + responseLength)
+				.putLong(durationInNanos)
+				.putShort((short) commandLength)
+				.put(command, 0, commandLength)
+				.putShort((short) responseLength)
+				.put(response, 0, responseLength);
+	}
+
+	synchronized void error(String terminalName, int code) {
+		if (!open) {
+			return;
+		}
+		header(Trace.ERROR, terminalId(terminalName), 4).putInt(code);
+	}
+
+	synchronized void typed(String terminalName, Uid uid) {
+		if (!open) {
+			return;
+		}
+		ByteBuffer record = header(Trace.TYPED, terminalId(terminalName), 1 + uid.length()).put((byte) uid.length());
+		for (int i = 0; i < uid.length(); i++) {
+			record.put((byte) uid.byteAt(i));
+		}
+	}
+
+	/**
+	 * Write the buffered records and close the trace
+	 */
+	synchronized void close() {
+		if (!open) {
+			return;
+		}
+		open = false;
+		flusher.interrupt();
+		try {
+			flush();
+			channel.close();
+		}
+		catch (IOException e) {
+			System.err.println("Could not close the trace");
+			e.printStackTrace();
+		}
+	}
+
+	private short terminalId(String terminalName) {
+		Short id = terminalIds.get(terminalName);
+		if (id == null) {
+			id = (short) terminalIds.size();
+			terminalIds.put(terminalName, id);
+			byte[] name = terminalName.getBytes(StandardCharsets.UTF_8);
+			header(Trace.TERMINAL, id, 2 + name.length).putShort((short) name.length).put(name);
+		}
+		return id;
+	}
+
+	/**
+	 * Write the header of a record, making sure the rest of the record fits in the buffer
+	 *
+	 * @return the buffer, to write the rest of the record to
+	 */
+	private ByteBuffer header(byte type, short terminalId, int length) {
+		if (buffer.remaining() < 1 + 8 + 2 + length) {
+			try {
+				flush();
+			}
+			catch (IOException e) {
+				// Losing (part of) a trace is no reason to stop reading cards
+				System.err.println("Could not write to the trace, dropping " + buffer.position() + " bytes");
+				buffer.clear();
+			}
+		}
+		return buffer.put(type).putLong(System.nanoTime() - start).putShort(terminalId);
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void flushPeriodically() {
+		while (open) {
+			try {
+				Thread.sleep(FLUSH_INTERVAL_IN_MS);
+				synchronized (this) {
+					if (open) {
+						flush();
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				// Closed
+			}
+			catch (IOException e) {
+				System.err.println("Could not write to the trace");
+				e.printStackTrace();
+			}
+		}
+	}
+}
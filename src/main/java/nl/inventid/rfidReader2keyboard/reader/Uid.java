@@ -0,0 +1,138 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The uid of a card. Uids are 4, 7 or 10 bytes (ISO 14443), which fit in two primitives, so comparing and hashing uids
+ * never touches an array or a String. The uid is only formatted as (upper case) hexadecimal when it is output.
+ */
+public final class Uid {
+
+	static final int MAX_LENGTH = 10;
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	// The first (at most) 8 bytes, big endian
+	private final long head;
+	// The remaining (at most) 2 bytes, big endian
+	private final int tail;
+	private final int length;
+
+	private Uid(long head, int tail, int length) {
+		this.head = head;
+		this.tail = tail;
+		this.length = length;
+	}
+
+	/**
+	 * Decode a uid from the start of a buffer, without changing its position
+	 *
+	 * @param buffer the buffer holding the uid at index 0
+	 * @param length the length of the uid in bytes, between 1 and MAX_LENGTH
+	 * @return the uid
+	 */
+	static Uid of(ByteBuffer buffer, int length) {
+		if (length < 1 || length > MAX_LENGTH) {
+			throw new IllegalArgumentException("Invalid uid length " + length);
+		}
+		return new Uid(head(buffer, length), tail(buffer, length), length);
+	}
+
+	/**
+	 * @param bytes the bytes of the uid
+	 * @return the uid
+	 */
+	public static Uid of(byte[] bytes) {
+		return of(ByteBuffer.wrap(bytes), bytes.length);
+	}
+
+	/**
+	 * Check whether the start of a buffer holds this uid, without creating a new Uid
+	 *
+	 * @param buffer the buffer holding a uid at index 0
+	 * @param length the length of the uid in the buffer
+	 * @return true if the buffer holds this uid
+	 */
+	boolean matches(ByteBuffer buffer, int length) {
+		return this.length == length && head == head(buffer, length) && tail == tail(buffer, length);
+	}
+
+	/**
+	 * @return the length of the uid in bytes
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * @return the length of the uid when formatted as hexadecimal
+	 */
+	public int hexLength() {
+		return 2 * length;
+	}
+
+	/**
+	 * Append the uid as upper case hexadecimal, e.g. to a reused StringBuilder
+	 *
+	 * @param target where to append the uid to
+	 */
+	public void appendHex(StringBuilder target) {
+		for (int i = 0; i < length; i++) {
+			int value = byteAt(i);
+			target.append(HEX[value >>> 4]).append(HEX[value & 0x0F]);
+		}
+	}
+
+	/**
+	 * @param index the index of the byte, between 0 and the length
+	 * @return the byte (unsigned) at the index
+	 */
+	int byteAt(int index) {
+		if (index < 8) {
+			int bytesInHead = Math.min(length, 8);
+			return (int) (head >>> (8 * (bytesInHead - 1 - index))) & 0xFF;
+		}
+		return (tail >>> (8 * (length - 1 - index))) & 0xFF;
+	}
+
+	private static long head(ByteBuffer buffer, int length) {
+		long value = 0;
+		for (int i = 0; i < Math.min(length, 8); i++) {
+			value = (value << 8) | (buffer.get(i) & 0xFF);
+		}
+		return value;
+	}
+
+	private static int tail(ByteBuffer buffer, int length) {
+		int value = 0;
+		for (int i = 8; i < length; i++) {
+			value = (value << 8) | (buffer.get(i) & 0xFF);
+		}
+		return value;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof Uid)) {
+			return false;
+		}
+		Uid other = (Uid) o;
+		return head == other.head && tail == other.tail && length == other.length;
+	}
+
+	@Override
+	public int hashCode() {
+		long mixed = (head ^ (head >>> 32)) * 31 + tail;
+		return (int) (mixed * 31 + length);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(hexLength());
+		appendHex(builder);
+		return builder.toString();
+	}
+}
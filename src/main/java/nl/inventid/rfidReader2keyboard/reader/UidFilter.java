@@ -0,0 +1,84 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import lombok.Getter;
+
+/**
+ * Decides locally whether a card is typed, based on a list of uids, so invalid tickets are rejected at the terminal
+ * instead of after a round trip to the backend. The list is reloaded when its file changes. A reloaded list replaces
+ * the previous one at once, so scanning never waits for a reload, and a list which fails to load keeps the previous
+ * one in use.
+ */
+public class UidFilter {
+
+	private final Path path;
+	@Getter
+	private final UidListMode mode;
+
+	private volatile UidSet uids;
+	private FileTime loadedModification;
+
+	/**
+	 * @param path the file with the uids, either compact or text
+	 * @param mode whether the uids are allowed or blocked
+	 * @throws IOException if the file could not be loaded
+	 */
+	public UidFilter(Path path, UidListMode mode) throws IOException {
+		this.path = path;
+		this.mode = mode;
+		reload();
+	}
+
+	/**
+	 * @param uid the uid of a card
+	 * @return true if the card should be typed
+	 */
+	public boolean accepts(Uid uid) {
+		return uids.contains(uid) == (mode == UidListMode.ALLOW);
+	}
+
+	/**
+	 * @return the amount of uids in the list which is in use
+	 */
+	public int size() {
+		return uids.size();
+	}
+
+	/**
+	 * Load the file again, and use it from now on
+	 *
+	 * @throws IOException if the file could not be loaded, in which case the previous list stays in use
+	 */
+	public synchronized void reload() throws IOException {
+		FileTime modification = Files.getLastModifiedTime(path);
+		long start = System.nanoTime();
+		UidSet loaded = UidSet.load(path);
+		uids = loaded;
+		loadedModification = modification;
+		System.out.println("Loaded " + loaded.size() + " uids to " + mode.name().toLowerCase() + " from " + path
+				+ " in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+	}
+
+	/**
+	 * Reload the file if it changed since it was last loaded. Fails silently (but loudly in the log), and does not try
+	 * again until the file changes again
+	 */
+	synchronized void reloadIfChanged() {
+		FileTime modification = null;
+		try {
+			modification = Files.getLastModifiedTime(path);
+			if (!modification.equals(loadedModification)) {
+				reload();
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			System.err.println("Unable to reload " + path + ", keeping the previous uids");
+			e.printStackTrace();
+			loadedModification = modification;
+		}
+	}
+}
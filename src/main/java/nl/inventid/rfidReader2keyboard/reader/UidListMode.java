@@ -0,0 +1,15 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+/**
+ * How the uids in a uid list are used to decide whether a card is typed
+ */
+public enum UidListMode {
+	/**
+	 * Only cards in the list are typed
+	 */
+	ALLOW,
+	/**
+	 * Cards in the list are not typed
+	 */
+	BLOCK,
+}
@@ -0,0 +1,205 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import com.google.common.io.BaseEncoding;
+
+/**
+ * An immutable set of uids, stored outside of the heap as an open addressing hash table, so millions of uids cost no
+ * garbage collection and a lookup is a few reads of memory. A set is either mapped from a compact file, which loads
+ * instantly whatever its size, or compiled from a text file with a uid (in hexadecimal) on each line.
+ *
+ * The compact file is the table itself: a header followed by the slots, each holding the length of a uid (0 for an
+ * empty slot) and its bytes. The table is at most half full, so a lookup finds an empty slot soon.
+ */
+public final class UidSet {
+
+	private static final byte[] MAGIC = new byte[] { 'R', 'F', 'I', 'D', 'U', 'I', 'D', '1' };
+	private static final int HEADER_SIZE = 16;
+	private static final int SLOT_COUNT_OFFSET = 8;
+	private static final int SIZE_OFFSET = 12;
+	private static final int SLOT_SIZE = 16;
+	private static final int MAX_SLOTS = (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE + 1;
+
+	private final ByteBuffer table;
+	private final int mask;
+	private final int size;
+
+	private UidSet(ByteBuffer table) throws IOException {
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (table.get(i) != MAGIC[i]) {
+				throw new IOException("Not a compact uid set");
+			}
+		}
+		int slots = table.getInt(SLOT_COUNT_OFFSET);
+		if (Integer.bitCount(slots) != 1 || table.capacity() < HEADER_SIZE + (long) slots * SLOT_SIZE) {
+			throw new IOException("Corrupt uid set of " + slots + " slots");
+		}
+		this.table = table;
+		this.mask = slots - 1;
+		this.size = table.getInt(SIZE_OFFSET);
+	}
+
+	/**
+	 * Load a set from a compact file (which is mapped) or from a text file (which is compiled)
+	 *
+	 * @param path the file
+	 * @return the set
+	 * @throws IOException if the file could not be read, or holds something which is not a uid
+	 */
+	public static UidSet load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+			channel.read(start, 0);
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (start.get(i) != MAGIC[i]) {
+					return compile(path);
+				}
+			}
+			// The mapping stays valid after closing the channel
+			return new UidSet(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Compile a text file with a uid on each line. Empty lines and lines starting with # are skipped
+	 *
+	 * @param path the text file
+	 * @return the set
+	 * @throws IOException if the file could not be read, or holds something which is not a uid
+	 */
+	public static UidSet compile(Path path) throws IOException {
+		long lines;
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+			lines = reader.lines().count();
+		}
+		long wanted = Long.highestOneBit(Math.max(lines, 1) * 2 - 1) << 1;
+		if (wanted > MAX_SLOTS) {
+			throw new IOException("Too many uids in " + path + ": " + lines);
+		}
+		int slots = (int) wanted;
+		ByteBuffer table = ByteBuffer.allocateDirect(HEADER_SIZE + slots * SLOT_SIZE);
+		table.put(MAGIC);
+		table.putInt(SLOT_COUNT_OFFSET, slots);
+
+		int size = 0;
+		int lineNumber = 0;
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				Uid uid;
+				try {
+					uid = Uid.of(BaseEncoding.base16().decode(line.toUpperCase()));
+				}
+				catch (IllegalArgumentException e) {
+					throw new IOException("Invalid uid on line " + lineNumber + " of " + path + ": " + line, e);
+				}
+				if (insert(table, slots - 1, uid)) {
+					size++;
+				}
+			}
+		}
+		table.putInt(SIZE_OFFSET, size);
+		return new UidSet(table);
+	}
+
+	/**
+	 * Write the set to a compact file, which loads instantly. The file is written next to the target and then moved
+	 * over it, since a running reader may have the target mapped, and truncating a mapped file crashes its lookups
+	 *
+	 * @param path the file to write
+	 * @throws IOException if the file could not be written
+	 */
+	public void save(Path path) throws IOException {
+		Path target = path.toAbsolutePath();
+		Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				ByteBuffer source = table.duplicate();
+				source.clear();
+				while (source.hasRemaining()) {
+					channel.write(source);
+				}
+				channel.force(true);
+			}
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * @param uid a uid
+	 * @return true if the set holds the uid
+	 */
+	public boolean contains(Uid uid) {
+		for (int slot = slotOf(uid, mask); ; slot = (slot + 1) & mask) {
+			int offset = HEADER_SIZE + slot * SLOT_SIZE;
+			int length = table.get(offset);
+			if (length == 0) {
+				return false;
+			}
+			if (matches(table, offset, uid)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return the amount of uids in the set
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return false if the table already held the uid
+	 */
+	private static boolean insert(ByteBuffer table, int mask, Uid uid) {
+		for (int slot = slotOf(uid, mask); ; slot = (slot + 1) & mask) {
+			int offset = HEADER_SIZE + slot * SLOT_SIZE;
+			if (table.get(offset) == 0) {
+				table.put(offset, (byte) uid.length());
+				for (int i = 0; i < uid.length(); i++) {
+					table.put(offset + 1 + i, (byte) uid.byteAt(i));
+				}
+				return true;
+			}
+			if (matches(table, offset, uid)) {
+				return false;
+			}
+		}
+	}
+
+	private static boolean matches(ByteBuffer table, int offset, Uid uid) {
+		if (table.get(offset) != uid.length()) {
+			return false;
+		}
+		for (int i = 0; i < uid.length(); i++) {
+			if ((table.get(offset + 1 + i) & 0xFF) != uid.byteAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int slotOf(Uid uid, int mask) {
+		// Spread the bits, since the table only uses the lowest
+		int hash = uid.hashCode() * 0x9E3779B1;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+}
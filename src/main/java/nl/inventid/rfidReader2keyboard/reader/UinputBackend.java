@@ -0,0 +1,217 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+
+/**
+ * Injects key events through a virtual keyboard of the Linux kernel (uinput). This bypasses X11 and Wayland altogether,
+ * so it works on every display server (and without one, e.g. on a framebuffer kiosk). A whole batch of key events is
+ * written at once, followed by a single synchronization event, so typing a uid takes a single system call.
+ *
+ * Needs write access to /dev/uinput, e.g. by adding the user to the input group, or a udev rule.
+ */
+class UinputBackend implements KeyboardBackend {
+
+	private static final String UINPUT = "/dev/uinput";
+	private static final String DEVICE_NAME = "rfid-reader2keyboard";
+
+	private static final int O_WRONLY = 01;
+	private static final int O_NONBLOCK = 04000;
+
+	// From linux/uinput.h
+	private static final long UI_DEV_CREATE = 0x5501;
+	private static final long UI_DEV_DESTROY = 0x5502;
+	private static final long UI_SET_EVBIT = 0x40045564;
+	private static final long UI_SET_KEYBIT = 0x40045565;
+	// The size of struct uinput_user_dev: a name, an input_id, ff_effects_max and 4 arrays of 64 ints
+	private static final int USER_DEV_SIZE = 80 + 8 + 4 + 4 * 64 * 4;
+	private static final short BUS_USB = 0x03;
+
+	// From linux/input-event-codes.h
+	private static final short EV_SYN = 0x00;
+	private static final short EV_KEY = 0x01;
+	private static final short SYN_REPORT = 0;
+
+	// The size of struct input_event: a timeval of two longs, followed by a type, a code and a value
+	private static final int EVENT_SIZE = 2 * Native.LONG_SIZE + 2 + 2 + 4;
+	// The time for the display server to pick up the new device, before it misses the first keys
+	private static final long SETTLE_TIME_IN_MS = 250;
+
+	private static final int[] KEY_CODES = keyCodes();
+
+	private final LibC libc;
+	private final int fd;
+
+	private ByteBuffer events = ByteBuffer.allocate(0);
+
+	/**
+	 * Create the virtual keyboard
+	 *
+	 * @throws IOException if uinput is not available, or not accessible
+	 */
+	UinputBackend() throws IOException {
+		if (!System.getProperty("os.name").toLowerCase().contains("linux")) {
+			throw new IOException("uinput is only available on Linux");
+		}
+		try {
+			this.libc = (LibC) Native.loadLibrary("c", LibC.class);
+		}
+		catch (LinkageError e) {
+			throw new IOException("Could not load libc", e);
+		}
+		this.fd = libc.open(UINPUT, O_WRONLY | O_NONBLOCK);
+		if (fd < 0) {
+			throw new IOException("Could not open " + UINPUT + " (errno " + Native.getLastError() + ")");
+		}
+		try {
+			createDevice();
+		}
+		catch (IOException e) {
+			libc.close(fd);
+			throw e;
+		}
+		System.out.println("Virtual keyboard " + DEVICE_NAME + " created on " + UINPUT);
+	}
+
+	@Override
+	public synchronized void send(int[] keyEvents, int length) {
+		int size = (length + 1) * EVENT_SIZE;
+		if (events.capacity() < size) {
+			events = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+		}
+		events.clear();
+		for (int i = 0; i < length; i++) {
+			int keyEvent = keyEvents[i];
+			int code = keyEvent > 0 ? linuxKeyOf(keyEvent) : linuxKeyOf(-keyEvent);
+			if (code == 0) {
+				System.err.println("Cannot type key " + KeyEvent.getKeyText(Math.abs(keyEvent)) + " with uinput");
+				continue;
+			}
+			putEvent(EV_KEY, (short) code, keyEvent > 0 ? 1 : 0);
+		}
+		putEvent(EV_SYN, SYN_REPORT, 0);
+		write(events.array(), events.position());
+	}
+
+	@Override
+	public synchronized void close() {
+		libc.ioctl(fd, new NativeLong(UI_DEV_DESTROY));
+		libc.close(fd);
+	}
+
+	private void createDevice() throws IOException {
+		ioctl(UI_SET_EVBIT, EV_KEY);
+		ioctl(UI_SET_EVBIT, EV_SYN);
+		for (int code : KEY_CODES) {
+			if (code != 0) {
+				ioctl(UI_SET_KEYBIT, code);
+			}
+		}
+
+		ByteBuffer device = ByteBuffer.allocate(USER_DEV_SIZE).order(ByteOrder.nativeOrder());
+		device.put(DEVICE_NAME.getBytes(StandardCharsets.US_ASCII));
+		device.position(80);
+		device.putShort(BUS_USB).putShort((short) 0x1209).putShort((short) 0x0001).putShort((short) 1);
+		write(device.array(), USER_DEV_SIZE);
+
+		if (libc.ioctl(fd, new NativeLong(UI_DEV_CREATE)) < 0) {
+			throw new IOException("Could not create the virtual keyboard (errno " + Native.getLastError() + ")");
+		}
+		try {
+			TimeUnit.MILLISECONDS.sleep(SETTLE_TIME_IN_MS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void ioctl(long request, int value) throws IOException {
+		if (libc.ioctl(fd, new NativeLong(request), value) < 0) {
+			throw new IOException("Could not configure the virtual keyboard (errno " + Native.getLastError() + ")");
+		}
+	}
+
+	private void write(byte[] bytes, int length) {
+		long written = libc.write(fd, bytes, new NativeLong(length)).longValue();
+		if (written != length) {
+			System.err.println("Could not write to the virtual keyboard (errno " + Native.getLastError() + ")");
+		}
+	}
+
+	private void putEvent(short type, short code, int value) {
+		// Leave the time empty, the kernel fills it in
+		for (int i = 0; i < 2 * Native.LONG_SIZE; i++) {
+			events.put((byte) 0);
+		}
+		events.putShort(type).putShort(code).putInt(value);
+	}
+
+	private static int linuxKeyOf(int awtKeyCode) {
+		return awtKeyCode < KEY_CODES.length ? KEY_CODES[awtKeyCode] : 0;
+	}
+
+	/**
+	 * @return the Linux key codes (of a US keyboard), by AWT key code
+	 */
+	private static int[] keyCodes() {
+		int[] codes = new int[256];
+		String rows = "QWERTYUIOP";
+		for (int i = 0; i < rows.length(); i++) {
+			codes[rows.charAt(i)] = 16 + i;
+		}
+		rows = "ASDFGHJKL";
+		for (int i = 0; i < rows.length(); i++) {
+			codes[rows.charAt(i)] = 30 + i;
+		}
+		rows = "ZXCVBNM";
+		for (int i = 0; i < rows.length(); i++) {
+			codes[rows.charAt(i)] = 44 + i;
+		}
+		for (int i = 1; i <= 9; i++) {
+			codes[KeyEvent.VK_0 + i] = 1 + i;
+		}
+		codes[KeyEvent.VK_0] = 11;
+		codes[KeyEvent.VK_MINUS] = 12;
+		codes[KeyEvent.VK_EQUALS] = 13;
+		codes[KeyEvent.VK_TAB] = 15;
+		codes[KeyEvent.VK_OPEN_BRACKET] = 26;
+		codes[KeyEvent.VK_CLOSE_BRACKET] = 27;
+		codes[KeyEvent.VK_ENTER] = 28;
+		codes[KeyEvent.VK_CONTROL] = 29;
+		codes[KeyEvent.VK_SEMICOLON] = 39;
+		codes[KeyEvent.VK_QUOTE] = 40;
+		codes[KeyEvent.VK_BACK_QUOTE] = 41;
+		codes[KeyEvent.VK_SHIFT] = 42;
+		codes[KeyEvent.VK_BACK_SLASH] = 43;
+		codes[KeyEvent.VK_COMMA] = 51;
+		codes[KeyEvent.VK_PERIOD] = 52;
+		codes[KeyEvent.VK_SLASH] = 53;
+		codes[KeyEvent.VK_SPACE] = 57;
+		codes[KeyEvent.VK_META] = 125;
+		return codes;
+	}
+
+	/**
+	 * The few functions of the C library needed to talk to uinput
+	 */
+	interface LibC extends Library {
+
+		int open(String path, int flags);
+
+		int ioctl(int fd, NativeLong request);
+
+		int ioctl(int fd, NativeLong request, int value);
+
+		NativeLong write(int fd, byte[] buffer, NativeLong count);
+
+		int close(int fd);
+	}
+}
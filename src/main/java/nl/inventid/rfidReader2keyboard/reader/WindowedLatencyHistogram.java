@@ -0,0 +1,54 @@
+package nl.inventid.rfidReader2keyboard.reader;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of the latencies of about the last minute. It is a ring of histograms which each cover a slice of
+ * SLICE_IN_SECONDS, and recording moves on to the next one (forgetting what it held) when its slice begins. So a
+ * snapshot covers between the last 50 and 60 seconds, without anyone having to reset the histogram periodically. A
+ * value recorded just as its histogram is forgotten may get lost, which does not matter for percentiles.
+ */
+class WindowedLatencyHistogram {
+
+	private static final int SLICES = 6;
+	private static final long SLICE_IN_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+	private final LatencyHistogram[] histograms = new LatencyHistogram[SLICES];
+	// The slice each histogram covers, as System.nanoTime() / SLICE_IN_NANOS
+	private final AtomicLongArray slices = new AtomicLongArray(SLICES);
+
+	WindowedLatencyHistogram() {
+		for (int i = 0; i < SLICES; i++) {
+			histograms[i] = new LatencyHistogram();
+			slices.set(i, Long.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * @param nanos the latency to record, in nanoseconds
+	 */
+	void record(long nanos) {
+		long slice = Math.floorDiv(System.nanoTime(), SLICE_IN_NANOS);
+		int index = (int) Math.floorMod(slice, SLICES);
+		long covered = slices.get(index);
+		if (covered != slice && slices.compareAndSet(index, covered, slice)) {
+			histograms[index].reset();
+		}
+		histograms[index].record(nanos);
+	}
+
+	/**
+	 * @return the percentiles of the values recorded in about the last minute
+	 */
+	LatencySnapshot snapshot() {
+		long current = Math.floorDiv(System.nanoTime(), SLICE_IN_NANOS);
+		long[] counts = LatencyHistogram.newCounts();
+		for (int i = 0; i < SLICES; i++) {
+			if (slices.get(i) > current - SLICES) {
+				histograms[i].addTo(counts);
+			}
+		}
+		return LatencyHistogram.snapshotOf(counts);
+	}
+}